@@ -0,0 +1,102 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import org.apache.commons.io.FileUtils;
+import se.trixon.cric.core.Task;
+import se.trixon.cric.core.Task.ModulePath;
+import se.trixon.cric.core.Task.Target;
+
+/**
+ * Creates the user directories and tasks the benchmarks run on.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+class BenchmarkSupport {
+
+    static Task createTask(int index, int moduleCount) {
+        var modules = new TreeSet<String>();
+        for (int i = 0; i < moduleCount; i++) {
+            modules.add("org.example.module%05d".formatted(i));
+        }
+
+        var modulePath = new ModulePath();
+        modulePath.setDirectory(new File("/opt/example/jmods"));
+        modulePath.setSelectedModules(modules);
+
+        var task = new Task();
+        task.setId(UUID.nameUUIDFromBytes(("task" + index).getBytes()).toString());
+        task.setName("Task %05d".formatted(index));
+        task.setDescription("Benchmark task %d".formatted(index));
+        task.setJlink(new File(System.getProperty("java.home"), "bin/jlink"));
+        task.setOutput(new File("/tmp/cric-benchmark/output%05d".formatted(index)));
+        task.setCompress(index % 10);
+        task.setStripDebug(true);
+        task.setNoManPages(true);
+        task.setModulePaths(new ArrayList<>(List.of(modulePath)));
+        task.setTargets(new ArrayList<>(List.of(
+                new Target("linux", new File("/opt/jdk-linux/jmods"), "-linux"),
+                new Target("windows", new File("/opt/jdk-windows/jmods"), "-windows")
+        )));
+
+        return task;
+    }
+
+    static List<Task> createTasks(int count, int moduleCount) {
+        var tasks = new ArrayList<Task>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(createTask(i, moduleCount));
+        }
+
+        return tasks;
+    }
+
+    static void deleteUserDirectory() {
+        var userDirectory = System.getProperty("netbeans.user");
+        if (userDirectory != null) {
+            FileUtils.deleteQuietly(new File(userDirectory));
+        }
+    }
+
+    /**
+     * Point the platform user directory, and with it the storage of CRIC, to
+     * a new temporary directory. Must be called before the storage is used.
+     *
+     * @return the user directory
+     * @throws IOException
+     */
+    static Path initUserDirectory() throws IOException {
+        var userDirectory = Files.createTempDirectory("cric-benchmark");
+        System.setProperty("netbeans.user", userDirectory.toString());
+
+        return userDirectory;
+    }
+
+    static File getJmodsDirectory() {
+        return new File(System.getProperty("java.home"), "jmods");
+    }
+
+    private BenchmarkSupport() {
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.module.ModuleDescriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import se.trixon.cric.core.JmodReader;
+import se.trixon.cric.core.ModuleGraph;
+import se.trixon.cric.core.Task;
+import se.trixon.cric.core.Task.ModulePath;
+
+/**
+ * Scanning the jmods of the running JDK and parsing their descriptors.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JmodBenchmark {
+
+    private List<File> mJmods;
+    private Task mTask;
+
+    /**
+     * Read every descriptor the way the module catalog does.
+     */
+    @Benchmark
+    public List<ModuleDescriptor> readDescriptors() throws IOException {
+        var descriptors = new ArrayList<ModuleDescriptor>(mJmods.size());
+        for (var jmod : mJmods) {
+            descriptors.add(JmodReader.readDescriptor(jmod.toPath()));
+        }
+
+        return descriptors;
+    }
+
+    /**
+     * Read every descriptor through a ZipFile, for comparison.
+     */
+    @Benchmark
+    public List<ModuleDescriptor> readDescriptorsZipFile() throws IOException {
+        var descriptors = new ArrayList<ModuleDescriptor>(mJmods.size());
+        for (var jmod : mJmods) {
+            try (var zipFile = new ZipFile(jmod)) {
+                var entry = zipFile.getEntry("classes/module-info.class");
+                try (var inputStream = zipFile.getInputStream(entry)) {
+                    descriptors.add(ModuleDescriptor.read(inputStream));
+                }
+            }
+        }
+
+        return descriptors;
+    }
+
+    /**
+     * Resolve all modules of the JDK, from the catalog and with services
+     * bound.
+     */
+    @Benchmark
+    public ModuleGraph.Resolution resolve() {
+        var graph = ModuleGraph.of(mTask);
+
+        return graph.resolve(mTask.getModulePaths().getFirst().getSelectedModules(), true);
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarkSupport.initUserDirectory();
+        var jmodsDirectory = BenchmarkSupport.getJmodsDirectory();
+        var files = jmodsDirectory.listFiles((dir, name) -> name.endsWith(".jmod"));
+        if (files == null || files.length == 0) {
+            throw new IllegalStateException("No jmods in " + jmodsDirectory);
+        }
+        mJmods = Arrays.asList(files);
+
+        var modulePath = new ModulePath();
+        modulePath.setDirectory(jmodsDirectory);
+        var modules = new TreeSet<String>();
+        for (var jmod : mJmods) {
+            modules.add(jmod.getName().replaceFirst("\\.jmod$", ""));
+        }
+        modulePath.setSelectedModules(modules);
+
+        mTask = BenchmarkSupport.createTask(0, 0);
+        mTask.setModulePaths(new ArrayList<>(List.of(modulePath)));
+        mTask.setTargets(new ArrayList<>());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.deleteUserDirectory();
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.benchmark;
+
+import com.sun.management.OperatingSystemMXBean;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.spi.ToolProvider;
+import org.apache.commons.io.FileUtils;
+import se.trixon.cric.core.ProcessMonitor;
+import se.trixon.cric.core.Task;
+import se.trixon.cric.core.Task.ModulePath;
+
+/**
+ * Links standard workloads from the jmods of the running JDK a number of
+ * times for every combination of the given task settings and jlink modes,
+ * and writes wall time, CPU time, peak RSS and image size of every run to
+ * CSV.
+ * <p>
+ * <pre>
+ * java -cp benchmarks.jar se.trixon.cric.benchmark.LinkHarness [OPTION]...
+ * </pre> A jlink process is sampled by a {@link ProcessMonitor} while it
+ * runs, in-process runs measure this process with its peak RSS reset before
+ * every run. RSS and I/O require Linux, elsewhere they are -1.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class LinkHarness {
+
+    private static final String CSV_HEADER = "workload,mode,compress,strip_debug,no_man_pages,verbose,run,exit_code,wall_ms,cpu_ms,peak_rss_kb,read_bytes,written_bytes,image_bytes";
+    private static final String[] DESKTOP_MODULES = {
+        "java.desktop",
+        "java.logging",
+        "java.net.http",
+        "java.prefs",
+        "java.scripting",
+        "java.sql",
+        "java.xml",
+        "jdk.crypto.ec",
+        "jdk.localedata",
+        "jdk.unsupported",
+        "jdk.zipfs"
+    };
+    private static final String MODE_IN_PROCESS = "in-process";
+    private static final String MODE_PROCESS = "process";
+    private static final String USAGE = """
+            usage: LinkHarness [OPTION]...
+
+              --runs N               runs of every combination, default 3
+              --workloads LIST       of base, desktop and all, default all of them
+              --modes LIST           of process and in-process, default both
+              --compress LIST        zip levels 0-9, default 0,6,9
+              --strip-debug LIST     of false and true, default both
+              --no-man-pages LIST    of false and true, default true
+              --verbose LIST         of false and true, default false
+              --jmods DIR            default %s
+              --scratch DIR          directory of the images, default a temporary
+              --csv FILE             default link-harness.csv
+            """;
+    private List<Integer> mCompressLevels = List.of(0, 6, 9);
+    private File mCsvFile = new File("link-harness.csv");
+    private File mJmodsDirectory = BenchmarkSupport.getJmodsDirectory();
+    private List<String> mModes = List.of(MODE_PROCESS, MODE_IN_PROCESS);
+    private List<Boolean> mNoManPages = List.of(true);
+    private int mRuns = 3;
+    private File mScratchDirectory;
+    private List<Boolean> mStripDebug = List.of(false, true);
+    private List<Boolean> mVerbose = List.of(false);
+    private List<String> mWorkloads = List.of("base", "desktop", "all");
+
+    public static void main(String[] args) throws IOException {
+        var harness = new LinkHarness();
+        try {
+            harness.parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.print(USAGE.formatted(BenchmarkSupport.getJmodsDirectory()));
+            System.exit(2);
+        }
+
+        System.exit(harness.run());
+    }
+
+    public int run() throws IOException {
+        BenchmarkSupport.initUserDirectory();
+        var scratchDirectory = mScratchDirectory != null ? mScratchDirectory.toPath() : Files.createTempDirectory("cric-link");
+        Files.createDirectories(scratchDirectory);
+        var workloads = getWorkloads();
+        int failed = 0;
+
+        try (var csv = new PrintWriter(Files.newBufferedWriter(mCsvFile.toPath(), StandardCharsets.UTF_8), true)) {
+            csv.println(CSV_HEADER);
+            for (var workload : workloads.entrySet()) {
+                for (var mode : mModes) {
+                    for (var compress : mCompressLevels) {
+                        for (var stripDebug : mStripDebug) {
+                            for (var noManPages : mNoManPages) {
+                                for (var verbose : mVerbose) {
+                                    var output = scratchDirectory.resolve("image");
+                                    var command = createCommand(workload.getKey(), workload.getValue(), compress, stripDebug, noManPages, verbose, output.toFile());
+                                    for (int run = 1; run <= mRuns; run++) {
+                                        FileUtils.deleteDirectory(output.toFile());
+                                        var measurement = mode.equals(MODE_PROCESS) ? runProcess(command) : runInProcess(command);
+                                        long imageBytes = output.toFile().isDirectory() ? FileUtils.sizeOfDirectory(output.toFile()) : -1;
+                                        if (measurement.mExitCode != 0) {
+                                            failed++;
+                                        }
+
+                                        var line = "%s,%s,%d,%b,%b,%b,%d,%d,%d,%d,%d,%d,%d,%d".formatted(
+                                                workload.getKey(), mode, compress, stripDebug, noManPages, verbose, run,
+                                                measurement.mExitCode, measurement.mWallMillis, measurement.mCpuMillis, measurement.mPeakRssKb,
+                                                measurement.mReadBytes, measurement.mWrittenBytes, imageBytes);
+                                        csv.println(line);
+                                        System.out.println(line);
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (mScratchDirectory == null) {
+                FileUtils.deleteQuietly(scratchDirectory.toFile());
+            }
+            BenchmarkSupport.deleteUserDirectory();
+        }
+
+        System.out.println("Results written to " + mCsvFile.getAbsolutePath());
+
+        return failed == 0 ? 0 : 1;
+    }
+
+    private List<String> createCommand(String workload, TreeSet<String> modules, int compress, boolean stripDebug, boolean noManPages, boolean verbose, File output) {
+        var modulePath = new ModulePath();
+        modulePath.setDirectory(mJmodsDirectory);
+        modulePath.setSelectedModules(modules);
+
+        var task = new Task();
+        task.setName(workload);
+        task.setJlink(new File(System.getProperty("java.home"), "bin/jlink"));
+        task.setModulePaths(new ArrayList<>(List.of(modulePath)));
+        task.setTargets(new ArrayList<>());
+        task.setBindServices(workload.equals("all"));
+        task.setCompress(compress);
+        task.setStripDebug(stripDebug);
+        task.setNoManPages(noManPages);
+        task.setOutput(output);
+
+        // verbose is an option, not a task setting
+        var command = task.getCommand();
+        command.remove("--verbose");
+        if (verbose) {
+            command.add(1, "--verbose");
+        }
+
+        return command;
+    }
+
+    private long getPeakRssKb(String pid) {
+        try {
+            for (var line : Files.readAllLines(Path.of("/proc", pid, "status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException ex) {
+            // gone or not Linux
+        }
+
+        return -1;
+    }
+
+    private Map<String, TreeSet<String>> getWorkloads() {
+        var available = new TreeSet<String>();
+        var files = mJmodsDirectory.listFiles((dir, name) -> name.endsWith(".jmod"));
+        if (files == null || files.length == 0) {
+            throw new IllegalStateException("No jmods in " + mJmodsDirectory);
+        }
+        for (var file : files) {
+            available.add(file.getName().replaceFirst("\\.jmod$", ""));
+        }
+
+        var workloads = new LinkedHashMap<String, TreeSet<String>>();
+        for (var workload : mWorkloads) {
+            var modules = switch (workload) {
+                case "base" ->
+                    new TreeSet<>(List.of("java.base"));
+                case "desktop" ->
+                    new TreeSet<>(Arrays.stream(DESKTOP_MODULES).filter(available::contains).toList());
+                case "all" ->
+                    new TreeSet<>(available);
+                default ->
+                    throw new IllegalArgumentException("Unknown workload: " + workload);
+            };
+            workloads.put(workload, modules);
+        }
+
+        return workloads;
+    }
+
+    private String getValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+
+        return args[index];
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            var arg = args[i];
+            switch (arg) {
+                case "--runs" ->
+                    mRuns = parseInts(getValue(args, ++i, arg)).getFirst();
+                case "--workloads" ->
+                    mWorkloads = List.of(getValue(args, ++i, arg).split(","));
+                case "--modes" -> {
+                    mModes = List.of(getValue(args, ++i, arg).split(","));
+                    for (var mode : mModes) {
+                        if (!mode.equals(MODE_PROCESS) && !mode.equals(MODE_IN_PROCESS)) {
+                            throw new IllegalArgumentException("Unknown mode: " + mode);
+                        }
+                    }
+                }
+                case "--compress" ->
+                    mCompressLevels = parseInts(getValue(args, ++i, arg));
+                case "--strip-debug" ->
+                    mStripDebug = parseBooleans(getValue(args, ++i, arg));
+                case "--no-man-pages" ->
+                    mNoManPages = parseBooleans(getValue(args, ++i, arg));
+                case "--verbose" ->
+                    mVerbose = parseBooleans(getValue(args, ++i, arg));
+                case "--jmods" ->
+                    mJmodsDirectory = new File(getValue(args, ++i, arg));
+                case "--scratch" ->
+                    mScratchDirectory = new File(getValue(args, ++i, arg));
+                case "--csv" ->
+                    mCsvFile = new File(getValue(args, ++i, arg));
+                case "-h", "--help" ->
+                    throw new IllegalArgumentException("");
+                default ->
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+    }
+
+    private List<Boolean> parseBooleans(String value) {
+        var booleans = new ArrayList<Boolean>();
+        for (var item : value.split(",")) {
+            switch (item) {
+                case "true" ->
+                    booleans.add(true);
+                case "false" ->
+                    booleans.add(false);
+                default ->
+                    throw new IllegalArgumentException("Invalid boolean: " + item);
+            }
+        }
+
+        return booleans;
+    }
+
+    private List<Integer> parseInts(String value) {
+        var ints = new ArrayList<Integer>();
+        for (var item : value.split(",")) {
+            try {
+                ints.add(Integer.valueOf(item));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid number: " + item);
+            }
+        }
+
+        return ints;
+    }
+
+    private Measurement runInProcess(List<String> command) {
+        var toolProvider = ToolProvider.findFirst("jlink").orElseThrow();
+        var osBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        var out = new PrintWriter(OutputStream.nullOutputStream());
+        var pid = String.valueOf(ProcessHandle.current().pid());
+        System.gc();
+        try {
+            // reset the peak RSS of this process
+            Files.writeString(Path.of("/proc", pid, "clear_refs"), "5");
+        } catch (IOException ex) {
+            // not Linux
+        }
+
+        var measurement = new Measurement();
+        var cpuStart = osBean.getProcessCpuTime();
+        var start = System.nanoTime();
+        measurement.mExitCode = toolProvider.run(out, out, command.subList(1, command.size()).toArray(String[]::new));
+        measurement.mWallMillis = (System.nanoTime() - start) / 1_000_000;
+        measurement.mCpuMillis = (osBean.getProcessCpuTime() - cpuStart) / 1_000_000;
+        measurement.mPeakRssKb = getPeakRssKb(pid);
+
+        return measurement;
+    }
+
+    private Measurement runProcess(List<String> command) throws IOException {
+        var measurement = new Measurement();
+        var start = System.nanoTime();
+        var process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        var processMonitor = ProcessMonitor.start(process.toHandle());
+
+        try {
+            measurement.mExitCode = process.waitFor();
+        } catch (InterruptedException ex) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            measurement.mExitCode = -1;
+        }
+
+        measurement.mWallMillis = (System.nanoTime() - start) / 1_000_000;
+        var resourceUsage = processMonitor.stop();
+        measurement.mCpuMillis = resourceUsage.getCpuTime();
+        measurement.mPeakRssKb = resourceUsage.getPeakRss() < 0 ? -1 : resourceUsage.getPeakRss() / 1024;
+        measurement.mReadBytes = resourceUsage.getReadBytes();
+        measurement.mWrittenBytes = resourceUsage.getWrittenBytes();
+
+        return measurement;
+    }
+
+    private static class Measurement {
+
+        private long mCpuMillis = -1;
+        private int mExitCode;
+        private long mPeakRssKb = -1;
+        private long mReadBytes = -1;
+        private long mWallMillis;
+        private long mWrittenBytes = -1;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import se.trixon.cric.core.StorageManager;
+import se.trixon.cric.core.Task;
+import se.trixon.cric.core.TaskManager;
+
+/**
+ * Loading and saving the stored tasks.
+ * <p>
+ * Every fork has its own user directory since the storage is a singleton.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StorageBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int taskCount;
+    private StorageManager mStorageManager;
+    private int mSaveCounter;
+    private List<Task> mTasks;
+
+    /**
+     * Read the task index only, as done at startup.
+     */
+    @Benchmark
+    public TaskManager load() throws IOException {
+        mStorageManager.load();
+
+        return mStorageManager.getTaskManager();
+    }
+
+    /**
+     * Read the task index and every task.
+     */
+    @Benchmark
+    public TaskManager loadAll() throws IOException {
+        mStorageManager.load();
+        var taskManager = mStorageManager.getTaskManager();
+        for (var task : taskManager.getItems()) {
+            mStorageManager.ensureLoaded(task);
+        }
+
+        return taskManager;
+    }
+
+    /**
+     * Save after every task has changed.
+     */
+    @Benchmark
+    public void saveAll() {
+        var counter = ++mSaveCounter;
+        for (var task : mTasks) {
+            task.setDescription("Changed %d".formatted(counter));
+        }
+        StorageManager.save(mTasks);
+        mStorageManager.flush();
+    }
+
+    /**
+     * Save after one task has changed, the common case of an edit.
+     */
+    @Benchmark
+    public void saveOne() {
+        var counter = ++mSaveCounter;
+        var task = mTasks.get(counter % mTasks.size());
+        task.setDescription("Changed %d".formatted(counter));
+        StorageManager.save(task);
+        mStorageManager.flush();
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarkSupport.initUserDirectory();
+        mStorageManager = StorageManager.getInstance();
+        mTasks = BenchmarkSupport.createTasks(taskCount, 20);
+        mStorageManager.getTaskManager().setAll(mTasks);
+        StorageManager.save(mTasks);
+        mStorageManager.flush();
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        mStorageManager.getTaskManager().setAll(mTasks);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.deleteUserDirectory();
+    }
+}
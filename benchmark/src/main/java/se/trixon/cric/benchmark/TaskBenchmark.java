@@ -0,0 +1,73 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import se.trixon.cric.core.Task;
+
+/**
+ * Creating the jlink command of a task with many selected modules.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int moduleCount;
+    private Task mTask;
+
+    @Benchmark
+    public ArrayList<String> getCommand() {
+        return mTask.getCommand();
+    }
+
+    @Benchmark
+    public ArrayList<String> getCommandTarget() {
+        return mTask.getCommand(mTask.getTargets().getFirst());
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarkSupport.initUserDirectory();
+        mTask = BenchmarkSupport.createTask(0, moduleCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.deleteUserDirectory();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import se.trixon.cric.core.Task;
+import se.trixon.cric.core.TaskManager;
+
+/**
+ * Changes and lookups of the task manager, the sorted items included.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskManagerBenchmark {
+
+    private int mCounter;
+    private Task mExtraTask;
+    @Param({"10", "1000", "10000"})
+    public int taskCount;
+    private TaskManager mTaskManager;
+    private List<Task> mTasks;
+
+    @Benchmark
+    public Task getByName() {
+        return mTaskManager.getByName(mTasks.get(++mCounter % mTasks.size()).getName());
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        var task = mTasks.get(++mCounter % mTasks.size());
+
+        return mTaskManager.isValid(task.getName(), task.getName() + "x");
+    }
+
+    @Benchmark
+    public Task putRemove() {
+        var idToItem = mTaskManager.getIdToItem();
+        idToItem.put(mExtraTask.getId(), mExtraTask);
+
+        return idToItem.remove(mExtraTask.getId());
+    }
+
+    /**
+     * Rename a task in place, as the task editor does.
+     */
+    @Benchmark
+    public void rename() {
+        var task = mTasks.get(++mCounter % mTasks.size());
+        task.setName("%s %d".formatted(task.getName().substring(0, 10), mCounter));
+        mTaskManager.reindex(task);
+    }
+
+    @Benchmark
+    public TaskManager setAll() {
+        mTaskManager.setAll(mTasks);
+
+        return mTaskManager;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarkSupport.initUserDirectory();
+        mTaskManager = TaskManager.getInstance();
+        mTasks = BenchmarkSupport.createTasks(taskCount, 20);
+        mExtraTask = BenchmarkSupport.createTask(taskCount / 2, 20);
+        mExtraTask.setId("extra");
+        mTaskManager.setAll(mTasks);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.deleteUserDirectory();
+    }
+}
@@ -21,6 +21,7 @@ import org.openide.util.Exceptions;
 import org.openide.util.NbPreferences;
 import se.trixon.almond.nbp.NbHelper;
 import se.trixon.almond.nbp.dialogs.NbOptionalDialog;
+import se.trixon.cric.core.DeletionService;
 import se.trixon.cric.core.StorageManager;
 
 /**
@@ -48,6 +49,8 @@ public class DoOnStart implements Runnable {
         } catch (IOException ex) {
             Exceptions.printStackTrace(ex);
         }
+
+        DeletionService.getInstance().purge();
     }
 
 }
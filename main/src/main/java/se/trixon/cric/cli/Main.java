@@ -0,0 +1,333 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import org.apache.commons.lang3.SystemUtils;
+import se.trixon.cric.core.BackupJournal;
+import se.trixon.cric.core.DeletionService;
+import se.trixon.cric.core.JlinkArchive;
+import se.trixon.cric.core.LinkJob;
+import se.trixon.cric.core.Linker;
+import se.trixon.cric.core.OutputStaging;
+import se.trixon.cric.core.Preflight;
+import se.trixon.cric.core.StorageManager;
+import se.trixon.cric.core.Task;
+import se.trixon.cric.core.TaskManager;
+
+/**
+ * Command line entry point that runs stored tasks without starting the
+ * platform.
+ * <p>
+ * <pre>
+ * java -cp ... se.trixon.cric.cli.Main [--userdir DIR] [--threads N] [--list] TASK...
+ * java -cp ... se.trixon.cric.cli.Main [--userdir DIR] --restore TIME [TASK...]
+ * </pre> Tasks are given by name or uuid. The exit code is 0 when all tasks
+ * succeeded, 1 if any failed and 2 on usage errors.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class Main {
+
+    public static final int EXIT_FAILED = 1;
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_USAGE = 2;
+    private static final String USAGE = """
+            usage: cric-cli [--userdir DIR] [--threads N] [--list] TASK...
+                   cric-cli [--userdir DIR] --restore TIME [TASK...]
+
+              TASK            name or uuid of a stored task
+              --userdir DIR   the CRIC user directory, default %s
+              --threads N     number of tasks to run in parallel, default %d
+              --list          list the stored tasks
+              --restore TIME  restore the tasks, or all tasks, from the backup
+                              journal as they were at TIME (yyyy-MM-ddTHH:mm)
+            """;
+
+    private boolean mList;
+    private Long mRestoreTime;
+    private final List<String> mTaskRefs = new ArrayList<>();
+    private int mThreads = Linker.getConcurrency();
+    private File mUserDirectory = getDefaultUserDirectory();
+
+    public static void main(String[] args) {
+        System.exit(new Main().run(args));
+    }
+
+    private static File getDefaultUserDirectory() {
+        var home = SystemUtils.getUserHome();
+        if (SystemUtils.IS_OS_WINDOWS && System.getenv("APPDATA") != null) {
+            return new File(System.getenv("APPDATA"), "cric");
+        } else if (SystemUtils.IS_OS_MAC) {
+            return new File(home, "Library/Application Support/cric");
+        } else {
+            return new File(home, ".cric");
+        }
+    }
+
+    public int run(String[] args) {
+        try {
+            parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.print(USAGE.formatted(mUserDirectory, mThreads));
+            return EXIT_USAGE;
+        }
+
+        System.setProperty("java.awt.headless", "true");
+        System.setProperty("netbeans.user", mUserDirectory.getAbsolutePath());
+
+        var storageManager = StorageManager.getInstance();
+        try {
+            storageManager.load();
+        } catch (IOException ex) {
+            System.err.println(ex);
+            return EXIT_FAILED;
+        }
+
+        var taskManager = storageManager.getTaskManager();
+        if (mRestoreTime != null) {
+            return restore(taskManager);
+        }
+
+        if (mList) {
+            for (var task : taskManager.getItems()) {
+                System.out.println("%s  %s  %s".formatted(task.getId(), task.getName(), task.getDescription()));
+            }
+
+            return EXIT_OK;
+        }
+
+        var tasks = new LinkedHashMap<String, Task>();
+        for (var taskRef : mTaskRefs) {
+            var task = taskManager.getById(taskRef);
+            if (task == null) {
+                task = taskManager.getItems().stream()
+                        .filter(t -> t.getName().equalsIgnoreCase(taskRef))
+                        .findFirst()
+                        .orElse(null);
+            }
+
+            if (task == null) {
+                System.err.println("Task not found: " + taskRef);
+                return EXIT_USAGE;
+            }
+
+            tasks.put(task.getId(), task);
+        }
+
+        return runTasks(new ArrayList<>(tasks.values()));
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            var arg = args[i];
+            switch (arg) {
+                case "--list" ->
+                    mList = true;
+                case "--userdir" ->
+                    mUserDirectory = new File(getValue(args, ++i, arg));
+                case "--restore" -> {
+                    var value = getValue(args, ++i, arg);
+                    try {
+                        mRestoreTime = LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                    } catch (DateTimeParseException ex) {
+                        throw new IllegalArgumentException("Invalid time: " + value);
+                    }
+                }
+                case "--threads" -> {
+                    try {
+                        mThreads = Math.max(1, Integer.parseInt(getValue(args, ++i, arg)));
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("Invalid number of threads: " + args[i]);
+                    }
+                }
+                case "-h", "--help" ->
+                    throw new IllegalArgumentException("");
+                default -> {
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    mTaskRefs.add(arg);
+                }
+            }
+        }
+
+        if (!mList && mRestoreTime == null && mTaskRefs.isEmpty()) {
+            throw new IllegalArgumentException("No task specified");
+        }
+    }
+
+    private String getValue(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+
+        return args[index];
+    }
+
+    private int restore(TaskManager taskManager) {
+        var backupJournal = BackupJournal.getInstance();
+        var idToItem = taskManager.getIdToItem();
+
+        if (mTaskRefs.isEmpty()) {
+            var tasks = backupJournal.restore(mRestoreTime);
+            if (tasks.isEmpty()) {
+                System.err.println("No backup at " + new Date(mRestoreTime));
+                return EXIT_FAILED;
+            }
+
+            taskManager.setAll(tasks.values());
+            StorageManager.save(tasks.values());
+        } else {
+            var restoredTasks = new ArrayList<Task>();
+            for (var taskRef : mTaskRefs) {
+                var task = taskManager.getById(taskRef);
+                if (task == null) {
+                    task = taskManager.getItems().stream()
+                            .filter(t -> t.getName().equalsIgnoreCase(taskRef))
+                            .findFirst()
+                            .orElse(null);
+                }
+
+                var taskId = task == null ? taskRef : task.getId();
+                var restoredTask = backupJournal.restore(taskId, mRestoreTime);
+                if (restoredTask == null) {
+                    System.err.println("No backup of %s at %s".formatted(taskRef, new Date(mRestoreTime)));
+                    return EXIT_FAILED;
+                }
+
+                idToItem.put(taskId, restoredTask);
+                restoredTasks.add(restoredTask);
+            }
+            StorageManager.save(restoredTasks);
+        }
+
+        StorageManager.getInstance().flush();
+
+        for (var task : taskManager.getItems()) {
+            System.out.println("%s  %s".formatted(task.getId(), task.getName()));
+        }
+
+        return EXIT_OK;
+    }
+
+    private boolean runTask(Task task) {
+        StorageManager.getInstance().ensureLoaded(task);
+        var prefix = "[%s] ".formatted(task.getName());
+        var out = new PrintWriter(new PrefixWriter(prefix, System.out), true);
+        var err = new PrintWriter(new PrefixWriter(prefix, System.err), true);
+
+        if (!task.isValid()) {
+            err.print(task.getValidationError());
+            err.flush();
+            return false;
+        }
+
+        JlinkArchive.getInstance().create(task, out);
+        var linkJobs = LinkJob.of(task);
+        var problems = false;
+        for (var linkJob : linkJobs) {
+            var warnings = new ArrayList<String>();
+            for (var problem : Preflight.check(task, linkJob.getTarget(), warnings)) {
+                err.println("%s: %s".formatted(linkJob.getName(), problem));
+                problems = true;
+            }
+            for (var warning : warnings) {
+                err.println("%s: warning: %s".formatted(linkJob.getName(), warning));
+            }
+        }
+
+        if (problems) {
+            return false;
+        }
+
+        var outputStaging = OutputStaging.getInstance();
+        for (var linkJob : linkJobs) {
+            linkJob.setOut(out);
+            linkJob.setErr(err);
+            out.println(String.join(" ", linkJob.getCommand()));
+
+            try {
+                outputStaging.prepare(linkJob);
+            } catch (IOException ex) {
+                err.println("%s: %s".formatted(linkJob.getName(), ex.getMessage()));
+                return false;
+            }
+        }
+
+        var linker = new Linker();
+        linker.link(linkJobs);
+        linker.finish(linkJobs, (linkJob, level, message) -> {
+            var format = level == Level.SEVERE ? "%s: %s" : "%s: warning: %s";
+            err.println(format.formatted(linkJob.getName(), message));
+        });
+
+        for (var linkJob : linkJobs) {
+            var result = linkJob.isSuccess() ? "DONE" : "FAILED (%d)".formatted(linkJob.getResult());
+            var status = "%s %s in %.1f s, %s".formatted(linkJob.getName(), result, linkJob.getDuration() / 1E9, linkJob.getMode());
+            if (linkJob.getCacheStatus() != null) {
+                status += ", cache " + linkJob.getCacheStatus();
+            }
+            if (linkJob.getManifestDiff() != null) {
+                status += ", changes " + linkJob.getManifestDiff();
+            }
+            if (linkJob.getImageAnalysis() != null) {
+                status += ", size " + linkJob.getImageAnalysis().getCategorySummary();
+            }
+            (linkJob.isSuccess() ? out : err).println(status);
+        }
+
+        return linkJobs.stream().allMatch(LinkJob::isSuccess);
+    }
+
+    private int runTasks(List<Task> tasks) {
+        var executorService = Executors.newFixedThreadPool(Math.min(mThreads, tasks.size()));
+        var futures = new ArrayList<Future<Boolean>>();
+        for (var task : tasks) {
+            futures.add(executorService.submit(() -> runTask(task)));
+        }
+        executorService.shutdown();
+
+        var exitCode = EXIT_OK;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                if (!futures.get(i).get()) {
+                    exitCode = EXIT_FAILED;
+                }
+            } catch (InterruptedException | ExecutionException ex) {
+                System.err.println("[%s] %s".formatted(tasks.get(i).getName(), ex));
+                exitCode = EXIT_FAILED;
+            }
+        }
+        DeletionService.getInstance().awaitDeletions();
+
+        return exitCode;
+    }
+}
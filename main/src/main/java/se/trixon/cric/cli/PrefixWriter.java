@@ -0,0 +1,71 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.cli;
+
+import java.io.PrintStream;
+import java.io.Writer;
+
+/**
+ * Line buffered writer that prefixes every line, so the output of tasks
+ * running in parallel can be told apart on the console.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+class PrefixWriter extends Writer {
+
+    private final StringBuilder mBuilder = new StringBuilder();
+    private final String mPrefix;
+    private final PrintStream mPrintStream;
+
+    PrefixWriter(String prefix, PrintStream printStream) {
+        super(printStream);
+        mPrefix = prefix;
+        mPrintStream = printStream;
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    @Override
+    public void flush() {
+        synchronized (lock) {
+            if (!mBuilder.isEmpty()) {
+                writeLine();
+            }
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        synchronized (lock) {
+            for (int i = off; i < off + len; i++) {
+                var c = cbuf[i];
+                if (c == '\n') {
+                    writeLine();
+                } else if (c != '\r') {
+                    mBuilder.append(c);
+                }
+            }
+        }
+    }
+
+    private void writeLine() {
+        mPrintStream.println(mPrefix + mBuilder);
+        mBuilder.setLength(0);
+    }
+}
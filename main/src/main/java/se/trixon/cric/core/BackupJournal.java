@@ -0,0 +1,384 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.SerializedName;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Bounded journal of task backups.
+ * <p>
+ * The journal is a series of segment files named by their start time. Each
+ * segment starts with a snapshot of all tasks followed by one delta record
+ * per added, changed or removed task. A new segment is started when the
+ * current one has grown past {@link #SEGMENT_SIZE} or {@link #SNAPSHOT_FACTOR}
+ * times its snapshot, whichever is larger, so that the deltas always outweigh
+ * the snapshots of many tasks. The oldest segments are deleted when the
+ * journal exceeds {@link #MAX_SIZE}, or two segments if that is larger, or
+ * they are older than {@link #MAX_AGE_DAYS}. A point-in-time restore only
+ * reads the single segment covering that time.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class BackupJournal {
+
+    private static final Gson GSON = new GsonBuilder().serializeNulls().create();
+    private static final Logger LOGGER = Logger.getLogger(BackupJournal.class.getName());
+    private static final long MAX_AGE_DAYS = 180;
+    private static final long MAX_SIZE = 32 * FileUtils.ONE_MB;
+    private static final long SEGMENT_SIZE = FileUtils.ONE_MB;
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final long SNAPSHOT_FACTOR = 4;
+    private static final String TYPE_PUT = "put";
+    private static final String TYPE_REMOVE = "remove";
+    private static final String TYPE_SNAPSHOT = "snapshot";
+    private final File mDirectory;
+    private Map<String, JsonElement> mLastTasks;
+    private File mSegment;
+    private long mSnapshotSize;
+
+    public static BackupJournal getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private BackupJournal() {
+        mDirectory = StorageManager.getInstance().getBackupDirectory();
+    }
+
+    /**
+     * @return the start times of the segments, oldest first
+     */
+    public synchronized List<Long> getSegmentTimes() {
+        var times = new ArrayList<Long>();
+        for (var segment : getSegments()) {
+            times.add(getSegmentTime(segment));
+        }
+
+        return times;
+    }
+
+    /**
+     * Append the changes since the last recorded state of the tasks.
+     * <p>
+     * Tasks not in taskTrees are taken as unchanged, as stored in their task
+     * files.
+     *
+     * @param taskTrees the json of the changed tasks
+     * @param taskIds all tasks
+     */
+    public synchronized void record(Map<String, JsonElement> taskTrees, Set<String> taskIds) {
+        var now = System.currentTimeMillis();
+
+        try {
+            if (mSegment == null) {
+                var segments = getSegments();
+                if (!segments.isEmpty()) {
+                    mSegment = segments.getLast();
+                    mLastTasks = replay(mSegment, Long.MAX_VALUE, null);
+                    mSnapshotSize = getSnapshotSize(mSegment);
+                }
+            }
+
+            var currentTasks = new HashMap<String, JsonElement>();
+            for (var id : taskIds) {
+                var element = taskTrees.get(id);
+                if (element == null && mLastTasks != null) {
+                    element = mLastTasks.get(id);
+                }
+                if (element == null) {
+                    element = StorageManager.getInstance().readTaskTree(id);
+                }
+                if (element != null) {
+                    currentTasks.put(id, element);
+                }
+            }
+
+            if (mSegment == null || mSegment.length() > getRollSize()) {
+                startSegment(now, currentTasks);
+                prune(now);
+                return;
+            }
+
+            var records = new ArrayList<Record>();
+            currentTasks.forEach((id, task) -> {
+                // unchanged tasks are the same instances as the last ones
+                if (!Objects.equals(task, mLastTasks.get(id))) {
+                    records.add(new Record(TYPE_PUT, now, id, task));
+                }
+            });
+            for (var id : mLastTasks.keySet()) {
+                if (!currentTasks.containsKey(id)) {
+                    records.add(new Record(TYPE_REMOVE, now, id, null));
+                }
+            }
+
+            if (!records.isEmpty()) {
+                append(mSegment, records);
+                mLastTasks = currentTasks;
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to write the backup journal", ex);
+            mSegment = null;
+        }
+    }
+
+    /**
+     * @param time
+     * @return all tasks as they were at time, empty if the journal does not
+     * reach back that far
+     */
+    public synchronized Map<String, Task> restore(long time) {
+        var tasks = new LinkedHashMap<String, Task>();
+        var segment = getSegment(time);
+
+        if (segment != null) {
+            try {
+                replay(segment, time, null).forEach((id, json) -> tasks.put(id, StorageManager.GSON.fromJson(json, Task.class)));
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Failed to read the backup journal", ex);
+            }
+        }
+
+        return tasks;
+    }
+
+    /**
+     * @param taskId
+     * @param time
+     * @return the task as it was at time, or null if it did not exist then
+     */
+    public synchronized Task restore(String taskId, long time) {
+        var segment = getSegment(time);
+
+        if (segment != null) {
+            try {
+                var json = replay(segment, time, taskId).get(taskId);
+                if (json != null) {
+                    return StorageManager.GSON.fromJson(json, Task.class);
+                }
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Failed to read the backup journal", ex);
+            }
+        }
+
+        return null;
+    }
+
+    private void append(File segment, List<Record> records) throws IOException {
+        var sb = new StringBuilder();
+        for (var record : records) {
+            sb.append(GSON.toJson(record)).append('\n');
+        }
+
+        FileUtils.forceMkdir(mDirectory);
+        try (var channel = FileChannel.open(segment.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            var buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * @return the segment covering time, the last one starting at or before
+     * it
+     */
+    private File getSegment(long time) {
+        File result = null;
+        for (var segment : getSegments()) {
+            if (getSegmentTime(segment) <= time) {
+                result = segment;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the size past which a new segment is started
+     */
+    private long getRollSize() {
+        return Math.max(SEGMENT_SIZE, SNAPSHOT_FACTOR * mSnapshotSize);
+    }
+
+    private long getSegmentTime(File segment) {
+        return Long.parseLong(segment.getName().substring(0, segment.getName().length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private List<File> getSegments() {
+        var files = mDirectory.listFiles(file -> file.isFile() && file.getName().matches("\\d+\\" + SEGMENT_SUFFIX));
+        if (files == null) {
+            return List.of();
+        }
+
+        Arrays.sort(files, (o1, o2) -> Long.compare(getSegmentTime(o1), getSegmentTime(o2)));
+
+        return List.of(files);
+    }
+
+    /**
+     * @return the size of the snapshot line the segment starts with
+     */
+    private long getSnapshotSize(File segment) throws IOException {
+        try (var inputStream = new BufferedInputStream(new FileInputStream(segment))) {
+            long size = 0;
+            int b;
+            while ((b = inputStream.read()) != -1) {
+                size++;
+                if (b == '\n') {
+                    break;
+                }
+            }
+
+            return size;
+        }
+    }
+
+    /**
+     * Delete the oldest segments exceeding the size or age cap, always
+     * keeping the current one.
+     */
+    private void prune(long now) {
+        var segments = new ArrayList<>(getSegments());
+        long total = segments.stream().mapToLong(File::length).sum();
+        var maxSize = Math.max(MAX_SIZE, 2 * getRollSize());
+        var minTime = now - TimeUnit.DAYS.toMillis(MAX_AGE_DAYS);
+
+        while (segments.size() > 1) {
+            var oldest = segments.getFirst();
+            // a segment is needed until the next one starts
+            var end = getSegmentTime(segments.get(1));
+            if (total <= maxSize && end >= minTime) {
+                break;
+            }
+
+            total -= oldest.length();
+            FileUtils.deleteQuietly(oldest);
+            segments.removeFirst();
+        }
+    }
+
+    /**
+     * Read a segment up to time, optionally only the records of one task.
+     * Unreadable records, like a line cut off by a crash, are skipped.
+     */
+    private Map<String, JsonElement> replay(File segment, long time, String taskId) throws IOException {
+        var tasks = new HashMap<String, JsonElement>();
+
+        try (var reader = Files.newBufferedReader(segment.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Record record;
+                try {
+                    record = GSON.fromJson(line, Record.class);
+                } catch (JsonParseException ex) {
+                    continue;
+                }
+
+                if (record == null || record.mTime > time) {
+                    break;
+                }
+
+                switch (record.mType) {
+                    case TYPE_SNAPSHOT -> {
+                        tasks.clear();
+                        record.mTasks.forEach((id, task) -> {
+                            if (taskId == null || taskId.equals(id)) {
+                                tasks.put(id, task);
+                            }
+                        });
+                    }
+                    case TYPE_PUT -> {
+                        if (taskId == null || taskId.equals(record.mId)) {
+                            tasks.put(record.mId, record.mTask);
+                        }
+                    }
+                    case TYPE_REMOVE ->
+                        tasks.remove(record.mId);
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        return tasks;
+    }
+
+    private void startSegment(long time, Map<String, JsonElement> tasks) throws IOException {
+        var segment = new File(mDirectory, time + SEGMENT_SUFFIX);
+        var snapshot = new Record(TYPE_SNAPSHOT, time, null, null);
+        snapshot.mTasks = tasks;
+        append(segment, List.of(snapshot));
+
+        mSegment = segment;
+        mSnapshotSize = segment.length();
+        mLastTasks = tasks;
+    }
+
+    private static class Holder {
+
+        private static final BackupJournal INSTANCE = new BackupJournal();
+    }
+
+    private static class Record {
+
+        @SerializedName("id")
+        private String mId;
+        @SerializedName("task")
+        private JsonElement mTask;
+        @SerializedName("tasks")
+        private Map<String, JsonElement> mTasks;
+        @SerializedName("time")
+        private long mTime;
+        @SerializedName("type")
+        private String mType;
+
+        public Record() {
+        }
+
+        Record(String type, long time, String id, JsonElement task) {
+            mType = type;
+            mTime = time;
+            mId = id;
+            mTask = task;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.SystemUtils;
+
+/**
+ * Finds the trade-off between link time, image size and startup time of the
+ * compression levels of a task.
+ * <p>
+ * The task is linked at every zip level, concurrently and without the link
+ * cache, into a scratch directory. The startup time of every image is then
+ * measured one at a time with {@code bin/java -Xshare:off -version}, so the
+ * cost of decompressing the classes is not hidden by a CDS archive. Targets
+ * are left out, the images have to run on this machine.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class CompressionTuner {
+
+    public static final int LEVELS = 10;
+    /**
+     * The number of progress steps, a link and a startup measurement per
+     * level.
+     */
+    public static final int STEPS = 2 * LEVELS;
+    private static final int STARTUP_RUNS = 5;
+    private final Linker mLinker = new Linker();
+    private final Task mTask;
+
+    public CompressionTuner(Task task) {
+        mTask = task;
+    }
+
+    /**
+     * Link and measure every level.
+     *
+     * @param progress called with the number of completed steps
+     * @return the results by level, with the Pareto optimal ones marked
+     * @throws InterruptedException
+     */
+    public List<Result> tune(IntConsumer progress) throws InterruptedException {
+        var scratchDirectory = new File(StorageManager.getInstance().getScratchDirectory(), "tune-" + UUID.randomUUID());
+        var results = new ArrayList<Result>();
+        var steps = new AtomicInteger();
+        var executorService = Executors.newFixedThreadPool(Math.min(LEVELS, Linker.getConcurrency()));
+
+        try {
+            var futures = new ArrayList<Future<Result>>();
+            for (int level = 0; level < LEVELS; level++) {
+                var linkJob = createLinkJob(level, new File(scratchDirectory, "zip-" + level));
+                futures.add(executorService.submit(() -> {
+                    var result = link(linkJob);
+                    progress.accept(steps.incrementAndGet());
+                    return result;
+                }));
+            }
+
+            for (int level = 0; level < LEVELS; level++) {
+                try {
+                    results.add(futures.get(level).get());
+                } catch (ExecutionException ex) {
+                    var result = new Result(level);
+                    result.mError = Objects.toString(ex.getCause().getMessage(), ex.getCause().toString());
+                    results.add(result);
+                }
+            }
+
+            // one at a time, concurrent links would distort the measurements
+            for (var result : results) {
+                if (result.isSuccess()) {
+                    result.mStartupTime = measureStartup(result.mImage);
+                }
+                progress.accept(steps.incrementAndGet());
+            }
+        } finally {
+            executorService.shutdownNow();
+            try {
+                // let interrupted links end before their images are deleted
+                executorService.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            DeletionService.getInstance().delete(scratchDirectory);
+        }
+
+        markParetoFront(results);
+
+        return results;
+    }
+
+    private LinkJob createLinkJob(int level, File output) {
+        var task = StorageManager.GSON.fromJson(StorageManager.GSON.toJson(mTask), Task.class);
+        task.setCompress(level);
+        task.setOutput(output);
+        task.setTargets(new ArrayList<>());
+
+        var linkJob = new LinkJob(task, null);
+        linkJob.setOut(new PrintWriter(Writer.nullWriter()));
+
+        return linkJob;
+    }
+
+    private Result link(LinkJob linkJob) throws IOException {
+        var errWriter = new StringWriter();
+        linkJob.setErr(new PrintWriter(errWriter, true));
+        mLinker.linkUncached(linkJob);
+
+        var result = new Result(linkJob.getTask().getCompress());
+        result.mLinkTime = linkJob.getDuration() / 1_000_000;
+        if (linkJob.isSuccess()) {
+            result.mImage = linkJob.getStaging();
+            result.mSize = ImageAnalysis.of(result.mImage).getTotalSize();
+        } else {
+            var lines = StringUtils.split(errWriter.toString(), '\n');
+            result.mError = lines.length > 0 ? lines[lines.length - 1].trim() : "exit code %d".formatted(linkJob.getResult());
+        }
+
+        return result;
+    }
+
+    /**
+     * A result is Pareto optimal when no other result is at least as good in
+     * link time, size and startup time and better in one of them.
+     */
+    private void markParetoFront(List<Result> results) {
+        var successful = results.stream().filter(Result::isSuccess).toList();
+        for (var result : successful) {
+            result.mParetoOptimal = successful.stream().noneMatch(other -> other.dominates(result));
+        }
+    }
+
+    /**
+     * @return the median wall time in ms of starting the image, or -1 if it
+     * can not be run here
+     */
+    private long measureStartup(File image) throws InterruptedException {
+        var java = new File(image, SystemUtils.IS_OS_WINDOWS ? "bin/java.exe" : "bin/java");
+        if (!java.canExecute()) {
+            return -1;
+        }
+
+        var times = new long[STARTUP_RUNS];
+        // the first run warms up the file system cache
+        for (int i = -1; i < STARTUP_RUNS; i++) {
+            var startTime = System.nanoTime();
+            try {
+                var process = new ProcessBuilder(java.getPath(), "-Xshare:off", "-version")
+                        .redirectErrorStream(true)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                if (process.waitFor() != 0) {
+                    return -1;
+                }
+            } catch (IOException ex) {
+                return -1;
+            }
+            if (i >= 0) {
+                times[i] = (System.nanoTime() - startTime) / 1_000_000;
+            }
+        }
+        Arrays.sort(times);
+
+        return times[STARTUP_RUNS / 2];
+    }
+
+    public static class Result {
+
+        private String mError;
+        private File mImage;
+        private final int mLevel;
+        private long mLinkTime;
+        private boolean mParetoOptimal;
+        private long mSize;
+        private long mStartupTime = -1;
+
+        public Result(int level) {
+            mLevel = level;
+        }
+
+        /**
+         * @return the last line of the jlink error output of a failed link, or
+         * the error that prevented linking, otherwise null
+         */
+        public String getError() {
+            return mError;
+        }
+
+        public int getLevel() {
+            return mLevel;
+        }
+
+        /**
+         * @return the link time in ms
+         */
+        public long getLinkTime() {
+            return mLinkTime;
+        }
+
+        /**
+         * @return the image size in bytes
+         */
+        public long getSize() {
+            return mSize;
+        }
+
+        /**
+         * @return the startup time in ms, or -1 if not measured
+         */
+        public long getStartupTime() {
+            return mStartupTime;
+        }
+
+        public boolean isParetoOptimal() {
+            return mParetoOptimal;
+        }
+
+        public boolean isSuccess() {
+            return mError == null;
+        }
+
+        private boolean dominates(Result other) {
+            var startupTime = mStartupTime < 0 || other.mStartupTime < 0 ? 0 : Long.compare(mStartupTime, other.mStartupTime);
+            var linkTime = Long.compare(mLinkTime, other.mLinkTime);
+            var size = Long.compare(mSize, other.mSize);
+
+            return linkTime <= 0 && size <= 0 && startupTime <= 0 && (linkTime < 0 || size < 0 || startupTime < 0);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.openide.awt.StatusDisplayer;
+
+/**
+ * Deletes directory trees in the background.
+ * <p>
+ * A tree is first renamed into a trash directory next to it, on the same file
+ * system, so it is gone from its path at once. It is then removed by a small
+ * pool of low priority threads walking its directories in parallel, on Linux
+ * also in the idle I/O class. The trash directories are registered in the
+ * user directory and whatever is left in them is removed on the next start.
+ * The registrations are read and merged under a lock on the file, so the
+ * application and the command line do not drop each other's directories.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class DeletionService {
+
+    private static final Gson GSON = new Gson();
+    private static final Logger LOGGER = Logger.getLogger(DeletionService.class.getName());
+    private static final long STATUS_INTERVAL = 250;
+    private static final String TRASH_DIR = ".cric-trash";
+    private final AtomicLong mDeletedFiles = new AtomicLong();
+    private long mLastStatus;
+    private final Set<Path> mPendingTrees = ConcurrentHashMap.newKeySet();
+    private final ForkJoinPool mPool;
+    private final StatusDisplayer mStatusDisplayer = StatusDisplayer.getDefault();
+    private final TreeSet<String> mTrashDirectories = new TreeSet<>();
+    private final File mTrashFile = StorageManager.getInstance().getTrashFile();
+
+    public static DeletionService getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private DeletionService() {
+        int parallelism = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        mPool = new ForkJoinPool(parallelism, DeletionThread::new, null, false);
+        loadTrashDirectories();
+    }
+
+    /**
+     * Wait for the deletions submitted so far, before the process exits.
+     */
+    public synchronized void awaitDeletions() {
+        try {
+            while (!mPendingTrees.isEmpty()) {
+                wait();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Move a file or directory to the trash and delete it in the background.
+     *
+     * @param file
+     */
+    public void delete(File file) {
+        var path = file.getAbsoluteFile().toPath();
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+
+        var trashDirectory = path.resolveSibling(TRASH_DIR);
+        var trash = trashDirectory.resolve("%s-%s".formatted(path.getFileName(), UUID.randomUUID()));
+        // held so the trash directory is not removed as empty before the move
+        synchronized (mTrashDirectories) {
+            try {
+                Files.createDirectories(trashDirectory);
+                addTrashDirectory(trashDirectory);
+                Files.move(path, trash, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Failed to move %s to the trash, deleting it in place".formatted(path), ex);
+                trash = path;
+            }
+        }
+
+        submit(trash);
+    }
+
+    /**
+     * @return the number of trees being deleted
+     */
+    public int getPendingCount() {
+        return mPendingTrees.size();
+    }
+
+    /**
+     * Delete what is left in the registered trash directories, by an earlier
+     * session that did not finish its deletions.
+     */
+    public void purge() {
+        ArrayList<String> trashDirectories;
+        synchronized (mTrashDirectories) {
+            trashDirectories = new ArrayList<>(mTrashDirectories);
+        }
+
+        for (var trashDirectory : trashDirectories) {
+            var children = new File(trashDirectory).listFiles();
+            if (children == null || children.length == 0) {
+                removeTrashDirectory(Path.of(trashDirectory));
+            } else {
+                for (var child : children) {
+                    submit(child.toPath());
+                }
+            }
+        }
+    }
+
+    private void addTrashDirectory(Path trashDirectory) {
+        updateTrashDirectories(trashDirectories -> trashDirectories.add(trashDirectory.toString()));
+    }
+
+    private void loadTrashDirectories() {
+        if (mTrashFile.isFile()) {
+            updateTrashDirectories(trashDirectories -> false);
+        }
+    }
+
+    private TreeSet<String> readTrashDirectories(FileChannel channel) throws IOException {
+        var buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+
+        try {
+            TreeSet<String> trashDirectories = GSON.fromJson(new String(buffer.array(), StandardCharsets.UTF_8), new TypeToken<TreeSet<String>>() {
+            }.getType());
+            if (trashDirectories != null) {
+                return trashDirectories;
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Failed to read " + mTrashFile, ex);
+        }
+
+        return new TreeSet<>();
+    }
+
+    private void removeTrashDirectory(Path trashDirectory) {
+        synchronized (mTrashDirectories) {
+            try {
+                Files.deleteIfExists(trashDirectory);
+            } catch (IOException ex) {
+                // not empty, still in use
+                return;
+            }
+
+            updateTrashDirectories(trashDirectories -> trashDirectories.remove(trashDirectory.toString()));
+        }
+    }
+
+    private void submit(Path path) {
+        if (!mPendingTrees.add(path)) {
+            return;
+        }
+
+        updateStatus(true);
+        mPool.execute(new DeleteAction(path, true));
+    }
+
+    private void updateStatus(boolean force) {
+        var now = System.currentTimeMillis();
+        synchronized (this) {
+            if (!force && now - mLastStatus < STATUS_INTERVAL) {
+                return;
+            }
+            mLastStatus = now;
+        }
+
+        var pending = mPendingTrees.size();
+        if (pending > 0) {
+            mStatusDisplayer.setStatusText("Deleting %d old image(s), %d files removed".formatted(pending, mDeletedFiles.get()));
+        } else {
+            mStatusDisplayer.setStatusText("Deleted old images, %d files removed".formatted(mDeletedFiles.getAndSet(0)));
+        }
+    }
+
+    /**
+     * Read the registered trash directories, apply an update and write them
+     * back if it changed them, all under a lock on the trash file.
+     *
+     * @param update returns true if it changed the directories
+     */
+    private void updateTrashDirectories(Predicate<TreeSet<String>> update) {
+        synchronized (mTrashDirectories) {
+            try {
+                FileUtils.forceMkdirParent(mTrashFile);
+                try (var channel = FileChannel.open(mTrashFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                        var lock = channel.lock()) {
+                    var trashDirectories = readTrashDirectories(channel);
+                    if (update.test(trashDirectories)) {
+                        var buffer = ByteBuffer.wrap(GSON.toJson(trashDirectories).getBytes(StandardCharsets.UTF_8));
+                        channel.truncate(0);
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer, buffer.position());
+                        }
+                        channel.force(false);
+                    }
+                    mTrashDirectories.clear();
+                    mTrashDirectories.addAll(trashDirectories);
+                }
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Failed to update " + mTrashFile, ex);
+            }
+        }
+    }
+
+    private class DeleteAction extends RecursiveAction {
+
+        private final Path mPath;
+        private final boolean mRoot;
+
+        public DeleteAction(Path path, boolean root) {
+            mPath = path;
+            mRoot = root;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                deleteTree();
+            } finally {
+                if (mRoot) {
+                    var parent = mPath.getParent();
+                    if (parent != null && parent.getFileName().toString().equals(TRASH_DIR)) {
+                        removeTrashDirectory(parent);
+                    }
+                    mPendingTrees.remove(mPath);
+                    updateStatus(true);
+                    synchronized (DeletionService.this) {
+                        DeletionService.this.notifyAll();
+                    }
+                }
+            }
+        }
+
+        private void deleteFile(Path path) {
+            try {
+                Files.deleteIfExists(path);
+                mDeletedFiles.incrementAndGet();
+                updateStatus(false);
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, "Failed to delete " + path, ex);
+            }
+        }
+
+        private void deleteTree() {
+            if (Files.isDirectory(mPath, LinkOption.NOFOLLOW_LINKS)) {
+                var subActions = new ArrayList<DeleteAction>();
+                try (var stream = Files.newDirectoryStream(mPath)) {
+                    for (var child : stream) {
+                        if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                            subActions.add(new DeleteAction(child, false));
+                        } else {
+                            deleteFile(child);
+                        }
+                    }
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Failed to list " + mPath, ex);
+                }
+                invokeAll(subActions);
+            }
+
+            deleteFile(mPath);
+        }
+    }
+
+    /**
+     * A minimum priority daemon thread, in the idle I/O scheduling class
+     * where supported.
+     */
+    private static class DeletionThread extends ForkJoinWorkerThread {
+
+        public DeletionThread(ForkJoinPool pool) {
+            super(pool);
+            setDaemon(true);
+            setPriority(Thread.MIN_PRIORITY);
+        }
+
+        @Override
+        protected void onStart() {
+            super.onStart();
+            setName("DeletionService-" + getPoolIndex());
+            if (!SystemUtils.IS_OS_LINUX) {
+                return;
+            }
+
+            try {
+                // thread-self links to <pid>/task/<tid>
+                var tid = Files.readSymbolicLink(Path.of("/proc/thread-self")).getFileName().toString();
+                new ProcessBuilder("ionice", "-c", "3", "-p", tid).start().waitFor();
+            } catch (IOException ex) {
+                // keep the default io priority
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class Holder {
+
+        private static final DeletionService INSTANCE = new DeletionService();
+    }
+}
@@ -15,19 +15,19 @@
  */
 package se.trixon.cric.core;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ResourceBundle;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import org.apache.commons.io.FileUtils;
-import org.netbeans.api.extexecution.ExecutionDescriptor;
-import org.netbeans.api.extexecution.ExecutionService;
+import org.apache.commons.lang3.StringUtils;
 import org.netbeans.api.progress.ProgressHandle;
-import org.openide.DialogDisplayer;
-import org.openide.NotifyDescriptor;
 import org.openide.awt.StatusDisplayer;
 import org.openide.util.Cancellable;
-import org.openide.util.Exceptions;
 import org.openide.util.NbBundle;
 import org.openide.windows.FoldHandle;
 import org.openide.windows.IOFolding;
@@ -36,6 +36,7 @@ import org.openide.windows.InputOutput;
 import se.trixon.almond.nbp.output.OutputHelper;
 import se.trixon.almond.nbp.output.OutputLineMode;
 import se.trixon.almond.util.Dict;
+import se.trixon.almond.util.fx.FxHelper;
 
 /**
  *
@@ -43,34 +44,75 @@ import se.trixon.almond.util.Dict;
  */
 public class Executor implements Runnable {
 
+    private static final int MAX_CHANGES = 20;
+    private static final int MAX_MODULES = 5;
     private final ResourceBundle mBundle = NbBundle.getBundle(Executor.class);
+    private boolean mCanceled;
     private Thread mExecutorThread;
-    private final InputOutput mInputOutput;
+    private InputOutput mInputOutput;
+    private List<LinkJob> mLinkJobs = List.of();
+    private final Linker mLinker = new Linker();
     private FoldHandle mMainFoldHandle;
-    private final OutputHelper mOutputHelper;
+    private OutputHelper mOutputHelper;
+    private final List<OutputPipeline> mOutputPipelines = new ArrayList<>();
+    private final LinkedHashMap<String, Long> mPhases = new LinkedHashMap<>();
     private ProgressHandle mProgressHandle;
     private final AtomicBoolean mRunning = new AtomicBoolean(false);
+    private long mStarted;
     private final StatusDisplayer mStatusDisplayer = StatusDisplayer.getDefault();
     private final Task mTask;
 
     public Executor(Task task) {
-        mTask = task;
-        mInputOutput = IOProvider.getDefault().getIO(mTask.getName(), false);
-        mInputOutput.select();
+        mTask = StorageManager.getInstance().ensureLoaded(task);
+    }
 
-        mOutputHelper = new OutputHelper(mTask.getName(), mInputOutput, false);
-        mOutputHelper.reset();
+    /**
+     * Cancel the run, or the run about to start. The summary is printed by
+     * the thread running the task.
+     */
+    public synchronized void cancel() {
+        mCanceled = true;
+        mRunning.set(false);
+        if (mExecutorThread != null) {
+            mExecutorThread.interrupt();
+        }
+    }
+
+    /**
+     * Run the task on the calling thread.
+     * <p>
+     * A task with targets links all of them concurrently, each one with its
+     * own output window, and prints a combined summary.
+     *
+     * @return the final state of the run
+     */
+    public RunState execute() {
+        synchronized (this) {
+            if (mCanceled) {
+                return RunState.CANCELED;
+            }
+            mExecutorThread = Thread.currentThread();
+            mRunning.set(true);
+        }
+
+        try {
+            return executeTask();
+        } finally {
+            synchronized (this) {
+                mExecutorThread = null;
+            }
+        }
+    }
+
+    public Task getTask() {
+        return mTask;
     }
 
     @Override
     public void run() {
-        mRunning.set(true);
         var allowToCancel = (Cancellable) () -> {
-            mRunning.set(false);
-            mExecutorThread.interrupt();
+            cancel();
             mProgressHandle.finish();
-            ExecutorManager.getInstance().getExecutors().remove(mTask.getId());
-            jobEnded(OutputLineMode.WARNING, Dict.CANCELED.toString());
 
             return true;
         };
@@ -79,91 +121,306 @@ public class Executor implements Runnable {
         mProgressHandle.start();
         mProgressHandle.switchToIndeterminate();
 
-        mExecutorThread = new Thread(() -> {
-            mOutputHelper.start();
-            mOutputHelper.printSectionHeader(OutputLineMode.INFO, Dict.START.toString(), Dict.TASK.toLower(), mTask.getName());
-            mMainFoldHandle = IOFolding.startFold(mInputOutput, true);
-            mInputOutput.getOut().println();
-            mInputOutput.getOut().println(String.join(" ", mTask.getCommand()));
-
-            if (initTargetDirectory()) {
-                var result = runProcess(mTask.getCommand());
-                if (result == 0) {
-                    jobEnded(OutputLineMode.OK, Dict.DONE.toString());
-                } else {
-                    jobEnded(OutputLineMode.ERROR, Dict.FAILED.toString());
-                }
-            } else {
-                jobEnded(OutputLineMode.WARNING, Dict.CANCELED.toString());
-            }
-
+        new Thread(() -> {
+            execute();
             mProgressHandle.finish();
             ExecutorManager.getInstance().getExecutors().remove(mTask.getId());
-        }, "Executor");
-
-        mExecutorThread.start();
+        }, "Executor").start();
     }
 
-    private boolean initTargetDirectory() {
-        boolean result = true;
-        var destDir = mTask.getOutput();
-        if (destDir.exists()) {
-            NotifyDescriptor d = new NotifyDescriptor(
-                    "Clear\n%s\nand continue?".formatted(destDir.getAbsolutePath()),
-                    "Clear existing directory?",
-                    NotifyDescriptor.OK_CANCEL_OPTION, // option type
-                    NotifyDescriptor.INFORMATION_MESSAGE, // message type
-                    null, // own buttons as Object[]
-                    null); // initial value
-            var retval = DialogDisplayer.getDefault().notify(d);
-            result = retval == NotifyDescriptor.OK_OPTION;
+    private List<LinkJob> createLinkJobs() {
+        var linkJobs = LinkJob.of(mTask);
 
-            if (result) {
-                FileUtils.deleteQuietly(destDir);
+        for (var linkJob : linkJobs) {
+            var inputOutput = mInputOutput;
+            if (linkJob.getTarget() != null) {
+                var title = "%s [%s]".formatted(mTask.getName(), linkJob.getName());
+                inputOutput = IOProvider.getDefault().getIO(title, false);
+                new OutputHelper(title, inputOutput, false).reset();
             }
+
+            linkJob.setOut(inputOutput.getOut());
+            linkJob.setErr(inputOutput.getErr());
         }
 
-        return result;
+        return linkJobs;
+    }
+
+    private RunState executeTask() {
+        mInputOutput = IOProvider.getDefault().getIO(mTask.getName(), false);
+        mInputOutput.select();
+
+        mOutputHelper = new OutputHelper(mTask.getName(), mInputOutput, false);
+        mOutputHelper.reset();
+        mOutputHelper.start();
+        mOutputHelper.printSectionHeader(OutputLineMode.INFO, Dict.START.toString(), Dict.TASK.toLower(), mTask.getName());
+        mMainFoldHandle = IOFolding.startFold(mInputOutput, true);
+
+        var runEvent = new FlightRecording.RunEvent();
+        runEvent.begin();
+        mStarted = System.currentTimeMillis();
+        mPhases.clear();
+        phase("cds", () -> {
+            JlinkArchive.getInstance().create(mTask, mInputOutput.getOut());
+            return null;
+        });
+        mLinkJobs = phase("jobs", this::createLinkJobs);
+        for (var linkJob : mLinkJobs) {
+            mInputOutput.getOut().println();
+            mInputOutput.getOut().println(String.join(" ", linkJob.getCommand()));
+        }
+
+        var runState = link();
+        phase("record", () -> {
+            record(runState);
+            return null;
+        });
+
+        runEvent.taskId = mTask.getId();
+        runEvent.taskName = mTask.getName();
+        runEvent.targets = mLinkJobs.size();
+        runEvent.state = runState.name();
+        runEvent.commit();
+
+        return runState;
+    }
+
+    /**
+     * @return the name of the link job to prefix its lines with, empty for
+     * a task without targets
+     */
+    private String getPrefix(LinkJob linkJob) {
+        return mLinkJobs.size() == 1 ? "" : linkJob.getName() + ": ";
     }
 
     private void jobEnded(OutputLineMode outputLineMode, String action) {
-        mMainFoldHandle.silentFinish();
+        if (mMainFoldHandle != null) {
+            mMainFoldHandle.silentFinish();
+        }
         mStatusDisplayer.setStatusText(action);
+
+        for (var linkJob : mLinkJobs) {
+            var prefix = getPrefix(linkJob);
+            if (mLinkJobs.size() > 1) {
+                var mode = linkJob.isSuccess() ? OutputLineMode.OK : OutputLineMode.ERROR;
+                var result = linkJob.isSuccess() ? Dict.DONE.toString() : Dict.FAILED.toString();
+                mOutputHelper.println(mode, "%s%s in %.1f s, %s".formatted(prefix, result, linkJob.getDuration() / 1E9, linkJob.getOutput().getPath()));
+            }
+            if (linkJob.getCacheStatus() != null) {
+                mOutputHelper.println(OutputLineMode.INFO, "%sLink cache: %s".formatted(prefix, linkJob.getCacheStatus()));
+            }
+            if (linkJob.getResourceUsage() != null) {
+                mOutputHelper.println(OutputLineMode.INFO, "%s%s".formatted(prefix, linkJob.getResourceUsage()));
+            }
+            var imageAnalysis = linkJob.getImageAnalysis();
+            if (imageAnalysis != null) {
+                mOutputHelper.println(OutputLineMode.INFO, "%sSize: %s".formatted(prefix, imageAnalysis.getCategorySummary()));
+                mOutputHelper.println(OutputLineMode.INFO, "%sModules: %s".formatted(prefix, imageAnalysis.getModuleSummary(MAX_MODULES)));
+            }
+            var manifestDiff = linkJob.getManifestDiff();
+            if (manifestDiff != null) {
+                mOutputHelper.println(OutputLineMode.INFO, "%sChanges: %s".formatted(prefix, manifestDiff));
+                printChanges(prefix, "+", manifestDiff.getAdded());
+                printChanges(prefix, "-", manifestDiff.getRemoved());
+                printChanges(prefix, "*", manifestDiff.getChanged());
+            }
+        }
+
         mOutputHelper.printSummary(outputLineMode, action, Dict.TASK.toString());
     }
 
-    private int runProcess(List<String> command) {
-        var processBuilder = org.netbeans.api.extexecution.base.ProcessBuilder.getLocal();
-        processBuilder.setExecutable(command.getFirst());
-        if (command.size() > 1) {
-            processBuilder.setArguments(command.subList(1, command.size()));
+    private RunState link() {
+        if (!phase("preflight", this::preflight)) {
+            jobEnded(OutputLineMode.ERROR, Dict.FAILED.toString());
+            return RunState.FAILED;
         }
 
-        var descriptor = new ExecutionDescriptor()
-                .frontWindow(true)
-                .inputOutput(mInputOutput)
-                .noReset(true)
-                .errLineBased(true)
-                .outLineBased(true)
-                .showProgress(false);
+        if (!phase("stage", this::prepareStaging)) {
+            jobEnded(OutputLineMode.ERROR, Dict.FAILED.toString());
+            return RunState.FAILED;
+        }
 
-        var service = ExecutionService.newService(
-                processBuilder,
-                descriptor,
-                mTask.getName());
+        openOutputPipelines();
+        try {
+            phase("link", () -> {
+                mLinker.link(mLinkJobs);
+                return null;
+            });
+        } finally {
+            phase("flush", () -> {
+                mOutputPipelines.forEach(OutputPipeline::close);
+                mOutputPipelines.clear();
+                return null;
+            });
+            if (mRunning.get()) {
+                phase("analyze", () -> {
+                    mLinker.analyze(mLinkJobs, this::printProblem);
+                    return null;
+                });
+            }
+            phase("swap", () -> {
+                mLinker.swap(mLinkJobs, mRunning.get(), this::printProblem);
+                return null;
+            });
+        }
 
-        var task = service.run();
+        if (mRunning.get()) {
+            phase("manifest", () -> {
+                mLinker.updateManifests(mLinkJobs, this::printProblem);
+                return null;
+            });
+        }
+
+        if (!mRunning.get()) {
+            jobEnded(OutputLineMode.WARNING, Dict.CANCELED.toString());
+            return RunState.CANCELED;
+        } else if (mLinkJobs.stream().allMatch(LinkJob::isSuccess)) {
+            jobEnded(OutputLineMode.OK, Dict.DONE.toString());
+            return RunState.DONE;
+        } else {
+            jobEnded(OutputLineMode.ERROR, Dict.FAILED.toString());
+            return RunState.FAILED;
+        }
+    }
+
+    /**
+     * Route the output of the link jobs through rate limited pipelines that
+     * also log everything to disk.
+     */
+    private void openOutputPipelines() {
+        for (var linkJob : mLinkJobs) {
+            var logPrefix = mTask.getId();
+            if (linkJob.getTarget() != null) {
+                logPrefix += "." + linkJob.getName().replaceAll("[^\\w.]", "_");
+            }
 
+            var outputPipeline = OutputPipeline.create(logPrefix, linkJob.getOut(), linkJob.getErr());
+            mOutputPipelines.add(outputPipeline);
+            linkJob.setOut(outputPipeline.getOut());
+            linkJob.setErr(outputPipeline.getErr());
+        }
+    }
+
+    /**
+     * Time a phase of the run, also emitted as a flight recorder event.
+     */
+    private <T> T phase(String name, Supplier<T> supplier) {
+        var event = FlightRecording.beginPhase(mTask, null, name);
+        var startTime = System.nanoTime();
         try {
-            return task.get();
-        } catch (InterruptedException ex) {
-            task.cancel(true);
-        } catch (ExecutionException ex) {
-            task.cancel(true);
-            mInputOutput.getErr().println(ex);
-            Exceptions.printStackTrace(ex);
+            return supplier.get();
+        } finally {
+            mPhases.put(name, (System.nanoTime() - startTime) / 1_000_000);
+            event.commit();
+        }
+    }
+
+    /**
+     * Resolve the modules of every link job before anything is started and
+     * report all problems found.
+     */
+    private boolean preflight() {
+        boolean result = true;
+        for (var linkJob : mLinkJobs) {
+            var prefix = getPrefix(linkJob);
+            var warnings = new ArrayList<String>();
+            for (var problem : Preflight.check(mTask, linkJob.getTarget(), warnings)) {
+                mOutputHelper.println(OutputLineMode.ERROR, prefix + problem);
+                result = false;
+            }
+            for (var warning : warnings) {
+                mOutputHelper.println(OutputLineMode.WARNING, prefix + warning);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Clear the staging directories of the link jobs, the outputs are left
+     * in place until their replacements are linked.
+     */
+    private boolean prepareStaging() {
+        boolean result = true;
+        for (var linkJob : mLinkJobs) {
+            try {
+                OutputStaging.getInstance().prepare(linkJob);
+            } catch (IOException ex) {
+                mOutputHelper.println(OutputLineMode.ERROR, getPrefix(linkJob) + ex.getMessage());
+                result = false;
+            }
         }
 
-        return -1;
+        return result;
+    }
+
+    private void printChanges(String prefix, String mark, List<String> names) {
+        var out = mInputOutput.getOut();
+        names.stream().limit(MAX_CHANGES).forEachOrdered(name -> out.println("%s%s %s".formatted(prefix, mark, name)));
+        if (names.size() > MAX_CHANGES) {
+            out.println("%s%s ... %d more".formatted(prefix, mark, names.size() - MAX_CHANGES));
+        }
+    }
+
+    private void printProblem(LinkJob linkJob, Level level, String message) {
+        var outputLineMode = level == Level.SEVERE ? OutputLineMode.ERROR : OutputLineMode.WARNING;
+        mOutputHelper.println(outputLineMode, getPrefix(linkJob) + message);
+    }
+
+    /**
+     * Append a record per link job to the run history and set the last run
+     * of the task.
+     */
+    private void record(RunState runState) {
+        var runHistory = RunHistory.getInstance();
+        for (var linkJob : mLinkJobs) {
+            var runRecord = new RunRecord();
+            runRecord.setTaskId(mTask.getId());
+            runRecord.setTaskName(mTask.getName());
+            runRecord.setTarget(linkJob.getTarget() == null ? null : linkJob.getName());
+            runRecord.setStarted(mStarted);
+            runRecord.setState(runState);
+            runRecord.setExitCode(linkJob.getResult());
+            runRecord.setMode(linkJob.getMode());
+            runRecord.getPhases().putAll(mPhases);
+            if (linkJob.getMode() != null) {
+                runRecord.getPhases().put("link", linkJob.getDuration() / 1_000_000);
+            }
+
+            var fingerprint = linkJob.getFingerprint();
+            if (fingerprint == null && linkJob.getMode() != null) {
+                try {
+                    fingerprint = LinkCache.getInstance().fingerprint(linkJob.getCommand());
+                } catch (IOException ex) {
+                    // nvm
+                }
+            }
+            runRecord.setFingerprint(fingerprint);
+            runRecord.setResourceUsage(linkJob.getResourceUsage());
+
+            var output = linkJob.getOutput();
+            if (linkJob.isSuccess() && output.isDirectory()) {
+                runRecord.setOutputSize(FileUtils.sizeOfDirectory(output));
+                var modules = new Jdk(output).getRelease("MODULES");
+                if (modules != null) {
+                    runRecord.setModuleCount(StringUtils.split(modules).length);
+                }
+            }
+
+            runHistory.append(runRecord);
+        }
+
+        var taskId = mTask.getId();
+        try {
+            FxHelper.runLater(() -> {
+                var task = TaskManager.getInstance().getById(taskId);
+                if (task != null) {
+                    task.setLastRun(mStarted);
+                    StorageManager.save(task);
+                }
+            });
+        } catch (IllegalStateException e) {
+            //nvm - no fx
+        }
     }
 }
@@ -16,17 +16,32 @@
 package se.trixon.cric.core;
 
 import java.awt.Dimension;
-import java.util.HashMap;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 import javafx.scene.Scene;
 import javax.swing.JButton;
 import javax.swing.SwingUtilities;
+import org.netbeans.api.progress.ProgressHandle;
 import org.openide.DialogDescriptor;
 import org.openide.DialogDisplayer;
+import org.openide.awt.StatusDisplayer;
+import org.openide.util.Cancellable;
 import org.openide.util.NbBundle;
+import org.openide.windows.IOProvider;
 import org.openide.windows.InputOutput;
 import se.trixon.almond.nbp.dialogs.NbMessage;
 import se.trixon.almond.nbp.fx.FxDialogPanel;
+import se.trixon.almond.nbp.output.OutputHelper;
+import se.trixon.almond.nbp.output.OutputLineMode;
 import se.trixon.almond.util.Dict;
 import se.trixon.almond.util.swing.SwingHelper;
 import se.trixon.cric.ui.TaskInfoPane;
@@ -37,10 +52,13 @@ import se.trixon.cric.ui.TaskInfoPane;
  */
 public class ExecutorManager {
 
+    private ThreadPoolExecutor mBatchExecutorService;
     private final ResourceBundle mBundle = NbBundle.getBundle(ExecutorManager.class);
-    private final HashMap<String, Executor> mExecutors = new HashMap<>();
+    private final Map<String, Executor> mExecutors = new ConcurrentHashMap<>();
     private InputOutput mInputOutput;
+    private final Options mOptions = Options.getInstance();
     private final Dimension mPreferredSize = SwingHelper.getUIScaledDim(800, 600);
+    private final Map<String, RunState> mRunStates = new ConcurrentHashMap<>();
 
     public static ExecutorManager getInstance() {
         return Holder.INSTANCE;
@@ -49,13 +67,34 @@ public class ExecutorManager {
     private ExecutorManager() {
     }
 
-    public HashMap<String, Executor> getExecutors() {
+    /**
+     * @return the number of tasks of a batch to run concurrently
+     */
+    public int getBatchConcurrency() {
+        if (mOptions.getBatchThreads() > 0) {
+            return mOptions.getBatchThreads();
+        }
+
+        return Linker.getConcurrency();
+    }
+
+    public Map<String, Executor> getExecutors() {
         return mExecutors;
     }
 
+    public RunState getRunState(String taskId) {
+        return mRunStates.get(taskId);
+    }
+
+    public Map<String, RunState> getRunStates() {
+        return mRunStates;
+    }
+
     public void requestStart(Task task) {
         if (mExecutors.containsKey(task.getId())) {
             NbMessage.error(Dict.Dialog.TITLE_TASK_RUNNING.toString(), Dict.Dialog.MESSAGE_TASK_RUNNING.toString());
+        } else if (StorageManager.getInstance().ensureLoaded(task).getLoadError() != null) {
+            NbMessage.error(task.getName(), task.getLoadError());
         } else {
             var taskInfoPane = new TaskInfoPane(task);
             var dialogPanel = new FxDialogPanel() {
@@ -93,12 +132,152 @@ public class ExecutorManager {
         }
     }
 
+    public void requestStartBatch(Collection<Task> tasks) {
+        var runnableTasks = new ArrayList<Task>();
+        for (var task : tasks) {
+            StorageManager.getInstance().ensureLoaded(task);
+            if (mExecutors.containsKey(task.getId())) {
+                NbMessage.error(Dict.Dialog.TITLE_TASK_RUNNING.toString(), Dict.Dialog.MESSAGE_TASK_RUNNING.toString());
+                return;
+            } else if (!task.isValid()) {
+                NbMessage.error(task.getName(), task.getValidationError());
+                return;
+            }
+
+            runnableTasks.add(task);
+        }
+
+        if (!runnableTasks.isEmpty()) {
+            startBatch(runnableTasks);
+        }
+    }
+
     public void start(Task task) {
         var executor = new Executor(task);
         mExecutors.put(task.getId(), executor);
         executor.run();
     }
 
+    /**
+     * Queue the tasks and run them on a worker pool sized by
+     * {@link #getBatchConcurrency()}, reporting the progress of the whole
+     * batch in a single progress handle. The pool is resized to the current
+     * concurrency, also for the tasks still queued by earlier batches.
+     *
+     * @param tasks
+     * @return a future completed when all tasks have ended
+     */
+    public synchronized CompletableFuture<Void> startBatch(List<Task> tasks) {
+        var concurrency = getBatchConcurrency();
+        if (mBatchExecutorService == null) {
+            var threadCounter = new AtomicInteger();
+            mBatchExecutorService = (ThreadPoolExecutor) Executors.newFixedThreadPool(concurrency, runnable -> {
+                var thread = new Thread(runnable, "BatchExecutor-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else if (concurrency > mBatchExecutorService.getMaximumPoolSize()) {
+            mBatchExecutorService.setMaximumPoolSize(concurrency);
+            mBatchExecutorService.setCorePoolSize(concurrency);
+        } else if (concurrency < mBatchExecutorService.getCorePoolSize()) {
+            mBatchExecutorService.setCorePoolSize(concurrency);
+            mBatchExecutorService.setMaximumPoolSize(concurrency);
+        }
+
+        var recording = mOptions.isJfrBatch() ? FlightRecording.start("batch") : null;
+        var batchEvent = new FlightRecording.BatchEvent();
+        batchEvent.begin();
+
+        var executors = new ArrayList<Executor>();
+        var done = new AtomicInteger();
+        var title = "%s (%d)".formatted(Dict.TASKS.toString(), tasks.size());
+        var allowToCancel = (Cancellable) () -> {
+            for (var executor : executors) {
+                // running or ended, cancelling an ended run does nothing
+                if (!mRunStates.replace(executor.getTask().getId(), RunState.QUEUED, RunState.CANCELED)) {
+                    executor.cancel();
+                }
+            }
+
+            return true;
+        };
+
+        var progressHandle = ProgressHandle.createHandle(title, allowToCancel);
+        progressHandle.start(tasks.size());
+
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (var task : tasks) {
+            var executor = new Executor(task);
+            executors.add(executor);
+            mExecutors.put(task.getId(), executor);
+            mRunStates.put(task.getId(), RunState.QUEUED);
+            var queueEvent = FlightRecording.beginPhase(task, null, "queue");
+
+            futures.add(CompletableFuture.runAsync(() -> {
+                queueEvent.commit();
+                try {
+                    if (mRunStates.replace(task.getId(), RunState.QUEUED, RunState.RUNNING)) {
+                        var runState = executor.execute();
+                        mRunStates.replace(task.getId(), RunState.RUNNING, runState);
+                    }
+                } finally {
+                    mRunStates.replace(task.getId(), RunState.RUNNING, RunState.FAILED);
+                    mExecutors.remove(task.getId());
+                    progressHandle.progress(task.getName(), done.incrementAndGet());
+                }
+            }, mBatchExecutorService));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).whenComplete((result, throwable) -> {
+            progressHandle.finish();
+            var failed = batchEnded(tasks, recording == null ? null : FlightRecording.stop(recording));
+            batchEvent.tasks = tasks.size();
+            batchEvent.failed = failed;
+            batchEvent.commit();
+        });
+    }
+
+    /**
+     * Print the result of a batch.
+     *
+     * @return the number of tasks that did not succeed
+     */
+    private int batchEnded(List<Task> tasks, File recordingFile) {
+        if (mInputOutput == null) {
+            mInputOutput = IOProvider.getDefault().getIO(Dict.TASKS.toString(), false);
+        }
+
+        var outputHelper = new OutputHelper(Dict.TASKS.toString(), mInputOutput, false);
+        int failed = 0;
+        for (var task : tasks) {
+            var runState = mRunStates.getOrDefault(task.getId(), RunState.CANCELED);
+            var outputLineMode = switch (runState) {
+                case DONE ->
+                    OutputLineMode.OK;
+                case FAILED ->
+                    OutputLineMode.ERROR;
+                default ->
+                    OutputLineMode.WARNING;
+            };
+
+            if (runState != RunState.DONE) {
+                failed++;
+            }
+
+            outputHelper.println(outputLineMode, "%-10s %s".formatted(runState, task.getName()));
+        }
+
+        if (recordingFile != null) {
+            outputHelper.println(OutputLineMode.INFO, "Flight recording: " + recordingFile.getAbsolutePath());
+        }
+
+        var status = "%d/%d %s".formatted(tasks.size() - failed, tasks.size(), Dict.DONE.toString());
+        outputHelper.println(failed == 0 ? OutputLineMode.OK : OutputLineMode.ERROR, status);
+        StatusDisplayer.getDefault().setStatusText(status);
+
+        return failed;
+    }
+
     private static class Holder {
 
         private static final ExecutorManager INSTANCE = new ExecutorManager();
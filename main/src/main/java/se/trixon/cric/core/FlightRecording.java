@@ -0,0 +1,174 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Java Flight Recorder events of the phases of a run, and recordings around
+ * batches.
+ * <p>
+ * The events are always emitted and cost next to nothing unless a recording,
+ * e.g. one started with jcmd JFR.start, is running.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class FlightRecording {
+
+    private static final Logger LOGGER = Logger.getLogger(FlightRecording.class.getName());
+    private static final int MAX_RECORDINGS = 10;
+
+    /**
+     * Begin the event of a phase, commit it when the phase has ended.
+     *
+     * @param task
+     * @param target the name of the target, or null
+     * @param phase
+     * @return
+     */
+    public static PhaseEvent beginPhase(Task task, String target, String phase) {
+        var event = new PhaseEvent();
+        event.taskId = task.getId();
+        event.taskName = task.getName();
+        event.target = target;
+        event.phase = phase;
+        event.begin();
+
+        return event;
+    }
+
+    public static PhaseEvent beginPhase(LinkJob linkJob, String phase) {
+        return beginPhase(linkJob.getTask(), linkJob.getTarget() == null ? null : linkJob.getName(), phase);
+    }
+
+    /**
+     * Start a recording with the profile settings to a new file in the
+     * recording directory, removing the oldest recordings.
+     *
+     * @param name
+     * @return the started recording, or null if it could not be started
+     */
+    public static Recording start(String name) {
+        var recordingDirectory = StorageManager.getInstance().getRecordingDirectory();
+        var recordingFile = new File(recordingDirectory, "%s-%d.jfr".formatted(name, System.currentTimeMillis()));
+
+        var recordingFiles = recordingDirectory.listFiles(file -> file.getName().endsWith(".jfr"));
+        if (recordingFiles != null && recordingFiles.length >= MAX_RECORDINGS) {
+            Arrays.sort(recordingFiles, Comparator.comparingLong(File::lastModified));
+            for (int i = 0; i <= recordingFiles.length - MAX_RECORDINGS; i++) {
+                FileUtils.deleteQuietly(recordingFiles[i]);
+            }
+        }
+
+        try {
+            FileUtils.forceMkdir(recordingDirectory);
+            var recording = new Recording(Configuration.getConfiguration("profile"));
+            recording.setName(name);
+            recording.setToDisk(true);
+            recording.setDestination(recordingFile.toPath());
+            recording.start();
+
+            return recording;
+        } catch (IOException | ParseException | IllegalStateException | SecurityException ex) {
+            LOGGER.log(Level.WARNING, "Failed to start a flight recording", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Stop and close a recording, writing it to its destination.
+     *
+     * @param recording
+     * @return the recording file
+     */
+    public static File stop(Recording recording) {
+        var destination = recording.getDestination();
+        try {
+            recording.stop();
+        } catch (IllegalStateException ex) {
+            LOGGER.log(Level.WARNING, "Failed to stop the flight recording", ex);
+        } finally {
+            recording.close();
+        }
+
+        return destination == null ? null : destination.toFile();
+    }
+
+    private FlightRecording() {
+    }
+
+    @Name("se.trixon.cric.Batch")
+    @Label("Batch")
+    @Category("CRIC")
+    @Description("A batch of tasks")
+    @StackTrace(false)
+    public static class BatchEvent extends Event {
+
+        @Label("Tasks")
+        public int tasks;
+        @Label("Failed")
+        public int failed;
+    }
+
+    @Name("se.trixon.cric.Phase")
+    @Label("Phase")
+    @Category("CRIC")
+    @Description("A phase of a run of a task")
+    @StackTrace(false)
+    public static class PhaseEvent extends Event {
+
+        @Label("Task Id")
+        public String taskId;
+        @Label("Task Name")
+        public String taskName;
+        @Label("Target")
+        public String target;
+        @Label("Phase")
+        public String phase;
+    }
+
+    @Name("se.trixon.cric.Run")
+    @Label("Run")
+    @Category("CRIC")
+    @Description("A run of a task, all targets included")
+    @StackTrace(false)
+    public static class RunEvent extends Event {
+
+        @Label("Task Id")
+        public String taskId;
+        @Label("Task Name")
+        public String taskName;
+        @Label("Targets")
+        public int targets;
+        @Label("State")
+        public String state;
+    }
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Size breakdown of a runtime image.
+ * <p>
+ * The files of the image are grouped into categories and the index of the
+ * {@code lib/modules} jimage is read, memory mapped and without extracting
+ * anything, to attribute its stored and uncompressed bytes to every module
+ * and package.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class ImageAnalysis {
+
+    public static final String CATEGORY_BIN = "bin";
+    public static final String CATEGORY_CONF = "conf";
+    public static final String CATEGORY_LEGAL = "legal";
+    public static final String CATEGORY_MODULES = "lib/modules";
+    public static final String CATEGORY_NATIVE = "native";
+    public static final String CATEGORY_OTHER = "other";
+    /**
+     * The module of the directory entries of the jimage itself.
+     */
+    public static final String JIMAGE_MODULE = "(jimage)";
+    private static final int ATTRIBUTE_COMPRESSED = 6;
+    private static final int ATTRIBUTE_COUNT = 8;
+    private static final int ATTRIBUTE_END = 0;
+    private static final int ATTRIBUTE_MODULE = 1;
+    private static final int ATTRIBUTE_PARENT = 2;
+    private static final int ATTRIBUTE_UNCOMPRESSED = 7;
+    private static final int HEADER_SIZE = 7 * Integer.BYTES;
+    private static final int MAGIC = 0xCAFEDADA;
+    private static final int MAJOR_VERSION = 1;
+    private final Map<String, Long> mCategories = new LinkedHashMap<>();
+    private long mIndexSize;
+    private final Map<String, Usage> mModules = new TreeMap<>();
+    private long mTotalSize;
+
+    /**
+     * Analyze the image in a directory.
+     *
+     * @param image
+     * @return
+     * @throws IOException
+     */
+    public static ImageAnalysis of(File image) throws IOException {
+        var analysis = new ImageAnalysis();
+        for (var category : List.of(CATEGORY_MODULES, CATEGORY_NATIVE, CATEGORY_BIN, CATEGORY_CONF, CATEGORY_LEGAL, CATEGORY_OTHER)) {
+            analysis.mCategories.put(category, 0L);
+        }
+
+        var root = image.toPath();
+        try (var stream = Files.walk(root)) {
+            for (var path : (Iterable<Path>) stream.filter(p -> Files.isRegularFile(p, LinkOption.NOFOLLOW_LINKS))::iterator) {
+                var name = root.relativize(path).toString().replace(File.separatorChar, '/');
+                var size = Files.size(path);
+                analysis.mCategories.merge(getCategory(name), size, Long::sum);
+                analysis.mTotalSize += size;
+            }
+        }
+
+        var modules = root.resolve("lib/modules");
+        if (Files.isRegularFile(modules)) {
+            analysis.readJimage(modules);
+        }
+
+        return analysis;
+    }
+
+    /**
+     * @return the name with the stored size, and the uncompressed size if it
+     * differs
+     */
+    private static String format(String name, Usage usage) {
+        var s = "%s %s".formatted(name, FileUtils.byteCountToDisplaySize(usage.getCompressed()));
+        if (usage.getUncompressed() != usage.getCompressed()) {
+            s += " (%s)".formatted(FileUtils.byteCountToDisplaySize(usage.getUncompressed()));
+        }
+
+        return s;
+    }
+
+    private static String getCategory(String name) {
+        if (name.equals(CATEGORY_MODULES)) {
+            return CATEGORY_MODULES;
+        } else if (name.endsWith(".so") || name.contains(".so.") || name.endsWith(".dll") || name.endsWith(".dylib")) {
+            return CATEGORY_NATIVE;
+        } else if (name.startsWith("legal/")) {
+            return CATEGORY_LEGAL;
+        } else if (name.startsWith("conf/")) {
+            return CATEGORY_CONF;
+        } else if (name.startsWith("bin/")) {
+            return CATEGORY_BIN;
+        } else {
+            return CATEGORY_OTHER;
+        }
+    }
+
+    private static List<Map.Entry<String, Usage>> getLargest(Map<String, Usage> usages, int count) {
+        return usages.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, Usage> entry) -> entry.getValue().getCompressed()).reversed())
+                .limit(count)
+                .toList();
+    }
+
+    private ImageAnalysis() {
+    }
+
+    /**
+     * @param sizeBudget in MB, 0 for no limit
+     * @return a description of the overrun, or null if the image is within
+     * the budget
+     */
+    public String checkBudget(long sizeBudget) {
+        if (sizeBudget > 0 && mTotalSize > sizeBudget * FileUtils.ONE_MB) {
+            return "Size budget exceeded, %s > %d MB".formatted(FileUtils.byteCountToDisplaySize(mTotalSize), sizeBudget);
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the bytes on disk per category, in display order
+     */
+    public Map<String, Long> getCategories() {
+        return mCategories;
+    }
+
+    /**
+     * @return the total, followed by the size of every non empty category
+     */
+    public String getCategorySummary() {
+        var parts = new ArrayList<String>();
+        parts.add(FileUtils.byteCountToDisplaySize(mTotalSize));
+        mCategories.forEach((category, size) -> {
+            if (size > 0) {
+                parts.add("%s %s".formatted(category, FileUtils.byteCountToDisplaySize(size)));
+            }
+        });
+
+        return String.join(", ", parts);
+    }
+
+    /**
+     * @return the size of the jimage header, lookup tables and strings
+     */
+    public long getIndexSize() {
+        return mIndexSize;
+    }
+
+    /**
+     * @param count
+     * @return the modules with the most stored bytes, largest first
+     */
+    public List<Map.Entry<String, Usage>> getLargestModules(int count) {
+        return getLargest(mModules, count);
+    }
+
+    /**
+     * @param count
+     * @return the largest modules with their stored and uncompressed sizes
+     */
+    public String getModuleSummary(int count) {
+        var parts = new ArrayList<String>();
+        for (var entry : getLargestModules(count)) {
+            parts.add(format(entry.getKey(), entry.getValue()));
+        }
+
+        return String.join(", ", parts);
+    }
+
+    /**
+     * @param modules
+     * @param packages
+     * @return a line per largest module, with the sizes of its largest
+     * packages
+     */
+    public String getPackageSummary(int modules, int packages) {
+        var lines = new ArrayList<String>();
+        for (var entry : getLargestModules(modules)) {
+            var line = format(entry.getKey(), entry.getValue());
+            var parts = new ArrayList<String>();
+            for (var pkg : entry.getValue().getLargestPackages(packages)) {
+                parts.add(format(pkg.getKey(), pkg.getValue()));
+            }
+            if (!parts.isEmpty()) {
+                line += ": " + String.join(", ", parts);
+            }
+            lines.add(line);
+        }
+
+        return String.join("\n", lines);
+    }
+
+    /**
+     * @return the usage per module, by name
+     */
+    public Map<String, Usage> getModules() {
+        return mModules;
+    }
+
+    public long getTotalSize() {
+        return mTotalSize;
+    }
+
+    private MappedByteBuffer map(FileChannel channel, long size) throws IOException {
+        var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        // images are written in the byte order of their target
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a jimage");
+            }
+        }
+
+        return buffer;
+    }
+
+    private void readJimage(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a jimage: " + path);
+            }
+
+            var header = map(channel, HEADER_SIZE);
+            var majorVersion = header.getInt(4) >>> 16;
+            if (majorVersion != MAJOR_VERSION) {
+                throw new IOException("Unsupported jimage version %d: %s".formatted(majorVersion, path));
+            }
+            var tableLength = header.getInt(16);
+            var locationsSize = header.getInt(20);
+            var stringsSize = header.getInt(24);
+
+            var offsetsStart = HEADER_SIZE + tableLength * Integer.BYTES;
+            var locationsStart = offsetsStart + tableLength * Integer.BYTES;
+            var stringsStart = locationsStart + locationsSize;
+            mIndexSize = (long) stringsStart + stringsSize;
+
+            var index = map(channel, mIndexSize);
+            var strings = new HashMap<Integer, String>();
+            var attributes = new long[ATTRIBUTE_COUNT];
+
+            for (int i = 0; i < tableLength; i++) {
+                var position = locationsStart + index.getInt(offsetsStart + i * Integer.BYTES);
+                readAttributes(index, position, attributes);
+
+                var module = readString(index, stringsStart, (int) attributes[ATTRIBUTE_MODULE], strings);
+                var parent = readString(index, stringsStart, (int) attributes[ATTRIBUTE_PARENT], strings);
+                var uncompressed = attributes[ATTRIBUTE_UNCOMPRESSED];
+                var compressed = attributes[ATTRIBUTE_COMPRESSED] > 0 ? attributes[ATTRIBUTE_COMPRESSED] : uncompressed;
+
+                if (module.isEmpty() || module.equals("modules") || module.equals("packages")) {
+                    module = JIMAGE_MODULE;
+                    parent = "";
+                }
+
+                var usage = mModules.computeIfAbsent(module, k -> new Usage(true));
+                usage.add(compressed, uncompressed);
+                usage.mPackages.computeIfAbsent(parent.replace('/', '.'), k -> new Usage(false)).add(compressed, uncompressed);
+            }
+        } catch (IndexOutOfBoundsException ex) {
+            throw new IOException("Corrupt jimage: " + path, ex);
+        }
+    }
+
+    /**
+     * Decode the attributes of a location, a sequence of kind and length
+     * bytes each followed by a big endian value, ended by a zero kind.
+     */
+    private void readAttributes(MappedByteBuffer index, int position, long[] attributes) throws IOException {
+        Arrays.fill(attributes, 0);
+        while (true) {
+            var data = index.get(position++) & 0xff;
+            var kind = data >>> 3;
+            if (kind == ATTRIBUTE_END) {
+                return;
+            } else if (kind >= ATTRIBUTE_COUNT) {
+                throw new IOException("Invalid jimage attribute %d".formatted(kind));
+            }
+
+            var length = (data & 0x7) + 1;
+            long value = 0;
+            for (int j = 0; j < length; j++) {
+                value = (value << 8) | (index.get(position++) & 0xff);
+            }
+            attributes[kind] = value;
+        }
+    }
+
+    private String readString(MappedByteBuffer index, int stringsStart, int offset, Map<Integer, String> strings) {
+        return strings.computeIfAbsent(offset, k -> {
+            var start = stringsStart + offset;
+            var end = start;
+            while (index.get(end) != 0) {
+                end++;
+            }
+
+            var bytes = new byte[end - start];
+            index.get(start, bytes);
+
+            return new String(bytes, StandardCharsets.UTF_8);
+        });
+    }
+
+    /**
+     * Stored and uncompressed bytes and number of resources of a module or a
+     * package.
+     */
+    public static class Usage {
+
+        private long mCompressed;
+        private final Map<String, Usage> mPackages;
+        private int mResources;
+        private long mUncompressed;
+
+        private Usage(boolean module) {
+            mPackages = module ? new TreeMap<>() : Map.of();
+        }
+
+        /**
+         * @return the bytes stored in the jimage
+         */
+        public long getCompressed() {
+            return mCompressed;
+        }
+
+        /**
+         * @param count
+         * @return the packages of a module with the most stored bytes,
+         * largest first
+         */
+        public List<Map.Entry<String, Usage>> getLargestPackages(int count) {
+            return getLargest(mPackages, count);
+        }
+
+        /**
+         * @return the usage per package of a module, empty for a package
+         */
+        public Map<String, Usage> getPackages() {
+            return mPackages;
+        }
+
+        public int getResources() {
+            return mResources;
+        }
+
+        public long getUncompressed() {
+            return mUncompressed;
+        }
+
+        private void add(long compressed, long uncompressed) {
+            mCompressed += compressed;
+            mUncompressed += uncompressed;
+            mResources++;
+        }
+    }
+}
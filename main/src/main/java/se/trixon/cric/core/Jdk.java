@@ -0,0 +1,88 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * The JDK that a jlink executable belongs to.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class Jdk {
+
+    private final File mHome;
+    private final Properties mRelease = new Properties();
+    private Runtime.Version mVersion;
+
+    public static Jdk of(File jlink) {
+        return new Jdk(jlink.getAbsoluteFile().getParentFile().getParentFile());
+    }
+
+    public Jdk(File home) {
+        mHome = home;
+
+        var releaseFile = new File(home, "release");
+        if (releaseFile.isFile()) {
+            try (Reader reader = Files.newBufferedReader(releaseFile.toPath(), StandardCharsets.UTF_8)) {
+                mRelease.load(reader);
+            } catch (IOException ex) {
+                // nvm
+            }
+        }
+
+        try {
+            mVersion = Runtime.Version.parse(getRelease("JAVA_VERSION"));
+        } catch (IllegalArgumentException | NullPointerException ex) {
+            mVersion = null;
+        }
+    }
+
+    public File getHome() {
+        return mHome;
+    }
+
+    public File getJmods() {
+        return new File(mHome, "jmods");
+    }
+
+    /**
+     * @param key
+     * @return the unquoted value of key in the release file, or null
+     */
+    public String getRelease(String key) {
+        var value = mRelease.getProperty(key);
+
+        return value == null ? null : StringUtils.strip(value, "\"");
+    }
+
+    public Runtime.Version getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @return true if this JDK has the same version as the running one
+     */
+    public boolean isRuntimeVersion() {
+        return mVersion != null && mVersion.version().equals(Runtime.version().version());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Dynamic CDS archives of the classes jlink itself loads, one per JDK, that
+ * cut the startup of the jlink process.
+ * <p>
+ * An archive is created by a trial link of java.base, with
+ * -XX:ArchiveClassesAtExit, and requires JDK 13 or later.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class JlinkArchive {
+
+    private static final int MIN_FEATURE = 13;
+    private final File mDirectory;
+
+    public static JlinkArchive getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private JlinkArchive() {
+        mDirectory = StorageManager.getInstance().getCdsDirectory();
+    }
+
+    /**
+     * Create the archive of a jlink unless it already exists.
+     *
+     * @param jlink
+     * @param out
+     * @return true if the archive exists
+     */
+    public synchronized boolean create(File jlink, PrintWriter out) {
+        var archive = getArchive(jlink);
+        if (archive.isFile()) {
+            return true;
+        }
+
+        var version = Jdk.of(jlink).getVersion();
+        if (version == null || version.feature() < MIN_FEATURE) {
+            out.println("No CDS archive for jlink %s, JDK %d or later required".formatted(version, MIN_FEATURE));
+            return false;
+        }
+
+        File workDirectory = null;
+        try {
+            FileUtils.forceMkdir(mDirectory);
+            workDirectory = Files.createTempDirectory(mDirectory.toPath(), "create").toFile();
+            var tempArchive = new File(workDirectory, archive.getName());
+            var command = List.of(
+                    jlink.getAbsolutePath(),
+                    "-J-XX:ArchiveClassesAtExit=" + tempArchive.getAbsolutePath(),
+                    "--add-modules", "java.base",
+                    "--strip-debug",
+                    "--output", new File(workDirectory, "image").getAbsolutePath()
+            );
+
+            out.println("Creating the CDS archive of " + jlink.getAbsolutePath());
+            var process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(new File(workDirectory, "log"))
+                    .start();
+            if (process.waitFor() == 0 && tempArchive.isFile()) {
+                Files.move(tempArchive.toPath(), archive.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                return true;
+            }
+
+            out.println(Files.readString(new File(workDirectory, "log").toPath(), StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            out.println(ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            FileUtils.deleteQuietly(workDirectory);
+        }
+
+        return false;
+    }
+
+    /**
+     * Create the archive of the jlink of a task, if its JVM profile asks for
+     * one.
+     *
+     * @param task
+     * @param out
+     */
+    public void create(Task task, PrintWriter out) {
+        if (task.getJvmProfileOrDefault().isCds() && task.getJlink() != null) {
+            create(task.getJlink(), out);
+        }
+    }
+
+    /**
+     * @param jlink
+     * @return the archive of jlink, that may not exist yet
+     */
+    public File getArchive(File jlink) {
+        var jdk = Jdk.of(jlink);
+        var modules = new File(jdk.getHome(), "lib/modules");
+        var key = "%s:%s:%d:%d".formatted(jlink.getAbsolutePath(), jdk.getVersion(), modules.length(), modules.lastModified());
+
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return new File(mDirectory, "jlink-%s.jsa".formatted(HexFormat.of().formatHex(digest, 0, 8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static class Holder {
+
+        private static final JlinkArchive INSTANCE = new JlinkArchive();
+    }
+}
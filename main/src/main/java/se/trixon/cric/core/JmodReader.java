@@ -0,0 +1,203 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.module.ModuleDescriptor;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the module-info.class of a jmod file without opening the whole
+ * archive.
+ * <p>
+ * Only the regions holding the end of central directory record, the central
+ * directory and the single module-info entry are memory mapped, so the size
+ * of the file does not matter. The central directory offsets are relative
+ * to the zip data, which starts after the jmod header, so they are adjusted
+ * by the actual position of the central directory.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class JmodReader {
+
+    private static final int CEN_HEADER_SIZE = 46;
+    private static final int DEFLATED = 8;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int LOC_HEADER_SIZE = 30;
+    private static final int LOC_SIGNATURE = 0x04034b50;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+    private static final int STORED = 0;
+    private static final byte[] MODULE_INFO = "classes/module-info.class".getBytes(StandardCharsets.UTF_8);
+
+    public static ModuleDescriptor readDescriptor(Path jmod) throws IOException {
+        return ModuleDescriptor.read(ByteBuffer.wrap(readModuleInfo(jmod)));
+    }
+
+    public static byte[] readModuleInfo(Path jmod) throws IOException {
+        try (var channel = FileChannel.open(jmod, StandardOpenOption.READ)) {
+            return readModuleInfo(channel);
+        } catch (ZipException ex) {
+            return readModuleInfoFromZipFile(jmod);
+        }
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer buffer) throws ZipException {
+        var limit = Math.max(0, buffer.limit() - END_HEADER_SIZE - MAX_COMMENT_SIZE);
+        for (int pos = buffer.limit() - END_HEADER_SIZE; pos >= limit; pos--) {
+            if (buffer.getInt(pos) == END_SIGNATURE) {
+                return pos;
+            }
+        }
+
+        throw new ZipException("End of central directory not found");
+    }
+
+    /**
+     * Map a region of the file, in the byte order of zip files.
+     */
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        if (position < 0 || size < 0 || size > Integer.MAX_VALUE || position + size > channel.size()) {
+            throw new ZipException("Invalid region %d+%d".formatted(position, size));
+        }
+
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static boolean nameEquals(ByteBuffer buffer, int pos, int length) {
+        if (length != MODULE_INFO.length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(pos + i) != MODULE_INFO[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static byte[] readEntry(FileChannel channel, long locPos, int method, long compressedSize, long size) throws IOException {
+        var header = map(channel, locPos, LOC_HEADER_SIZE);
+        if (header.getInt(0) != LOC_SIGNATURE) {
+            throw new ZipException("Invalid local file header");
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new ZipException("Invalid entry size");
+        }
+
+        var nameLength = Short.toUnsignedInt(header.getShort(26));
+        var extraLength = Short.toUnsignedInt(header.getShort(28));
+        var data = map(channel, locPos + LOC_HEADER_SIZE + nameLength + extraLength, compressedSize);
+        var bytes = new byte[(int) size];
+
+        switch (method) {
+            case STORED ->
+                data.get(bytes);
+
+            case DEFLATED -> {
+                var inflater = new Inflater(true);
+                try {
+                    inflater.setInput(data);
+                    var length = inflater.inflate(bytes);
+                    if (length != size) {
+                        throw new ZipException("Invalid entry size");
+                    }
+                } catch (DataFormatException ex) {
+                    throw new ZipException(ex.getMessage());
+                } finally {
+                    inflater.end();
+                }
+            }
+
+            default ->
+                throw new ZipException("Unsupported compression method " + method);
+        }
+
+        return bytes;
+    }
+
+    private static byte[] readModuleInfo(FileChannel channel) throws IOException {
+        var fileSize = channel.size();
+        var tailPos = Math.max(0, fileSize - END_HEADER_SIZE - MAX_COMMENT_SIZE);
+        var tail = map(channel, tailPos, fileSize - tailPos);
+        var tailEndPos = findEndOfCentralDirectory(tail);
+        var cenSize = Integer.toUnsignedLong(tail.getInt(tailEndPos + 12));
+        var cenOffset = Integer.toUnsignedLong(tail.getInt(tailEndPos + 16));
+        if (cenSize == 0xffffffffL || cenOffset == 0xffffffffL) {
+            throw new ZipException("Zip64 is not supported");
+        }
+
+        var endPos = tailPos + tailEndPos;
+        var cenPos = endPos - cenSize;
+        var adjustment = cenPos - cenOffset;
+        if (cenPos < 0 || adjustment < 0) {
+            throw new ZipException("Invalid central directory");
+        }
+
+        var buffer = map(channel, cenPos, cenSize);
+        var pos = 0;
+        while (pos + CEN_HEADER_SIZE <= cenSize) {
+            if (buffer.getInt(pos) != CEN_SIGNATURE) {
+                throw new ZipException("Invalid central directory header");
+            }
+
+            var method = Short.toUnsignedInt(buffer.getShort(pos + 10));
+            var compressedSize = Integer.toUnsignedLong(buffer.getInt(pos + 20));
+            var size = Integer.toUnsignedLong(buffer.getInt(pos + 24));
+            var nameLength = Short.toUnsignedInt(buffer.getShort(pos + 28));
+            var extraLength = Short.toUnsignedInt(buffer.getShort(pos + 30));
+            var commentLength = Short.toUnsignedInt(buffer.getShort(pos + 32));
+            var locOffset = Integer.toUnsignedLong(buffer.getInt(pos + 42));
+
+            if (pos + CEN_HEADER_SIZE + nameLength <= cenSize && nameEquals(buffer, pos + CEN_HEADER_SIZE, nameLength)) {
+                return readEntry(channel, locOffset + adjustment, method, compressedSize, size);
+            }
+
+            pos += CEN_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+
+        throw new ZipException("No module-info.class");
+    }
+
+    private static byte[] readModuleInfoFromZipFile(Path jmod) throws IOException {
+        try (var zipFile = new ZipFile(jmod.toFile())) {
+            var zipEntry = zipFile.getEntry(new String(MODULE_INFO, StandardCharsets.UTF_8));
+            if (zipEntry == null) {
+                throw new IOException("No module-info.class in " + jmod);
+            }
+
+            try (InputStream is = zipFile.getInputStream(zipEntry)) {
+                return is.readAllBytes();
+            }
+        }
+    }
+
+    private JmodReader() {
+    }
+}
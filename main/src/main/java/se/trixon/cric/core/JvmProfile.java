@@ -0,0 +1,146 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import com.google.gson.annotations.SerializedName;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * JVM options of the jlink process, for a task or as the global default.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class JvmProfile {
+
+    public static final String[] GCS = {"", "Serial", "Parallel", "G1", "Z"};
+    @SerializedName("activeProcessorCount")
+    private int mActiveProcessorCount;
+    @SerializedName("cds")
+    private boolean mCds;
+    @SerializedName("gc")
+    private String mGc;
+    @SerializedName("maxHeap")
+    private String mMaxHeap;
+    @SerializedName("tieredStopAtLevel")
+    private int mTieredStopAtLevel = -1;
+
+    public JvmProfile() {
+    }
+
+    public JvmProfile(JvmProfile jvmProfile) {
+        mActiveProcessorCount = jvmProfile.mActiveProcessorCount;
+        mCds = jvmProfile.mCds;
+        mGc = jvmProfile.mGc;
+        mMaxHeap = jvmProfile.mMaxHeap;
+        mTieredStopAtLevel = jvmProfile.mTieredStopAtLevel;
+    }
+
+    /**
+     * @return the number of CPUs the JVM should use, 0 for all
+     */
+    public int getActiveProcessorCount() {
+        return mActiveProcessorCount;
+    }
+
+    /**
+     * @return the garbage collector, empty for the JVM default
+     */
+    public String getGc() {
+        return StringUtils.defaultString(mGc);
+    }
+
+    /**
+     * Create the options, without the -J prefix, for the jlink of a JDK.
+     *
+     * @param jlink
+     * @return
+     */
+    public List<String> getJvmOptions(File jlink) {
+        var options = new ArrayList<String>();
+
+        if (StringUtils.isNotBlank(mMaxHeap)) {
+            options.add("-Xmx" + mMaxHeap.trim());
+        }
+
+        if (StringUtils.isNotBlank(mGc)) {
+            options.add("-XX:+Use%sGC".formatted(mGc));
+        }
+
+        if (mTieredStopAtLevel >= 0) {
+            options.add("-XX:TieredStopAtLevel=" + mTieredStopAtLevel);
+        }
+
+        if (mActiveProcessorCount > 0) {
+            options.add("-XX:ActiveProcessorCount=" + mActiveProcessorCount);
+        }
+
+        if (mCds && jlink != null) {
+            var archive = JlinkArchive.getInstance().getArchive(jlink);
+            if (archive.isFile()) {
+                options.add("-XX:SharedArchiveFile=" + archive.getPath());
+                options.add("-Xshare:auto");
+            }
+        }
+
+        return options;
+    }
+
+    /**
+     * @return the maximum heap size, like 512m or 4g, empty for the JVM
+     * default
+     */
+    public String getMaxHeap() {
+        return StringUtils.defaultString(mMaxHeap);
+    }
+
+    /**
+     * @return the highest JIT tier, -1 for the JVM default
+     */
+    public int getTieredStopAtLevel() {
+        return mTieredStopAtLevel;
+    }
+
+    /**
+     * @return true if jlink should start from a CDS archive of its own
+     * classes
+     */
+    public boolean isCds() {
+        return mCds;
+    }
+
+    public void setActiveProcessorCount(int activeProcessorCount) {
+        mActiveProcessorCount = activeProcessorCount;
+    }
+
+    public void setCds(boolean cds) {
+        mCds = cds;
+    }
+
+    public void setGc(String gc) {
+        mGc = gc;
+    }
+
+    public void setMaxHeap(String maxHeap) {
+        mMaxHeap = maxHeap;
+    }
+
+    public void setTieredStopAtLevel(int tieredStopAtLevel) {
+        mTieredStopAtLevel = tieredStopAtLevel;
+    }
+}
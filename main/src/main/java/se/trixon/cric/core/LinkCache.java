@@ -0,0 +1,298 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Content addressed cache of linked runtime images.
+ * <p>
+ * Entries are keyed by a fingerprint of the jlink command line (except the
+ * output directory and the JVM options), the jlink installation and the
+ * content of every module on the module path, packaged or exploded.
+ * Identical images produced by different tasks therefore share the same
+ * entry.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class LinkCache {
+
+    private static final Logger LOGGER = Logger.getLogger(LinkCache.class.getName());
+    private static final String IMAGE_DIR = "image";
+    private static final String SIZE_FILE = "size";
+    private final File mCacheDirectory;
+    private final Map<String, String> mContentDigests = new ConcurrentHashMap<>();
+    private final Options mOptions = Options.getInstance();
+
+    public static LinkCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private LinkCache() {
+        mCacheDirectory = StorageManager.getInstance().getLinkCacheDirectory();
+    }
+
+    public String fingerprint(List<String> command) throws IOException {
+        var digest = newDigest();
+        var jlink = new File(command.getFirst());
+        update(digest, "jlink", jlink.getAbsolutePath());
+        update(digest, "jlink.content", getContentDigest(jlink.toPath()));
+
+        var javaHome = jlink.getAbsoluteFile().getParentFile().getParentFile();
+        var release = new File(javaHome, "release");
+        if (release.isFile()) {
+            update(digest, "release", getContentDigest(release.toPath()));
+        }
+        var modules = new File(javaHome, "lib/modules");
+        if (modules.isFile()) {
+            update(digest, "modules", "%d:%d".formatted(modules.length(), modules.lastModified()));
+        }
+
+        for (int i = 1; i < command.size(); i++) {
+            var arg = command.get(i);
+            if (arg.equals("--output")) {
+                i++;
+            } else if (!arg.equals("--verbose") && !arg.startsWith("-J")) {
+                update(digest, "arg", arg);
+            }
+
+            if (arg.equals("--module-path") && i + 1 < command.size()) {
+                for (var path : StringUtils.split(command.get(i + 1), File.pathSeparator)) {
+                    updateModulePath(digest, new File(path).toPath());
+                }
+            }
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public boolean isCached(String fingerprint) {
+        return new File(getEntryDirectory(fingerprint), IMAGE_DIR).isDirectory();
+    }
+
+    /**
+     * Restore a cached image into the given, non existing, directory.
+     *
+     * @param fingerprint
+     * @param destDir
+     * @return true on a cache hit
+     */
+    public boolean restore(String fingerprint, File destDir) {
+        var entryDir = getEntryDirectory(fingerprint);
+        var imageDir = new File(entryDir, IMAGE_DIR);
+        if (!imageDir.isDirectory()) {
+            return false;
+        }
+
+        try {
+            copyTree(imageDir.toPath(), destDir.toPath());
+            Files.setLastModifiedTime(entryDir.toPath(), FileTime.fromMillis(System.currentTimeMillis()));
+
+            return true;
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to restore cached image " + fingerprint, ex);
+            DeletionService.getInstance().delete(destDir);
+
+            return false;
+        }
+    }
+
+    public void store(String fingerprint, File sourceDir) {
+        if (isCached(fingerprint) || !sourceDir.isDirectory()) {
+            return;
+        }
+
+        var entryDir = getEntryDirectory(fingerprint);
+        var tempDir = new File(mCacheDirectory, "%s.tmp-%s".formatted(fingerprint, UUID.randomUUID()));
+
+        try {
+            var imageDir = new File(tempDir, IMAGE_DIR);
+            copyTree(sourceDir.toPath(), imageDir.toPath());
+            var size = FileUtils.sizeOfDirectory(imageDir);
+            Files.writeString(new File(tempDir, SIZE_FILE).toPath(), String.valueOf(size));
+            Files.move(tempDir.toPath(), entryDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to cache image " + fingerprint, ex);
+        } finally {
+            FileUtils.deleteQuietly(tempDir);
+        }
+
+        evict(mOptions.getLinkCacheSize() * FileUtils.ONE_MB);
+    }
+
+    public synchronized void evict(long maxSize) {
+        var entries = mCacheDirectory.listFiles(file -> file.isDirectory() && !file.getName().contains(".tmp-") && !file.getName().startsWith("."));
+        if (entries == null) {
+            return;
+        }
+
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        var sizes = new long[entries.length];
+        long total = 0;
+        for (int i = 0; i < entries.length; i++) {
+            sizes[i] = getEntrySize(entries[i]);
+            total += sizes[i];
+        }
+
+        for (int i = 0; i < entries.length && total > maxSize; i++) {
+            DeletionService.getInstance().delete(entries[i]);
+            total -= sizes[i];
+        }
+    }
+
+    /**
+     * Copy the tree of source to dest. Images are never hard linked to or from
+     * the cache, so that an image edited in place can not change the cached
+     * entry handed out to other tasks.
+     */
+    private void copyTree(Path source, Path dest) throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(dest.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.copy(file, dest.resolve(source.relativize(file)), StandardCopyOption.COPY_ATTRIBUTES);
+
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private String getContentDigest(Path path) throws IOException {
+        var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        var key = "%s:%d:%d".formatted(path.toAbsolutePath(), attrs.size(), attrs.lastModifiedTime().toMillis());
+        var contentDigest = mContentDigests.get(key);
+
+        if (contentDigest == null) {
+            var digest = newDigest();
+            var buffer = new byte[64 * 1024];
+            try (InputStream is = Files.newInputStream(path)) {
+                int len;
+                while ((len = is.read(buffer)) > 0) {
+                    digest.update(buffer, 0, len);
+                }
+            }
+            contentDigest = HexFormat.of().formatHex(digest.digest());
+            mContentDigests.put(key, contentDigest);
+        }
+
+        return contentDigest;
+    }
+
+    private File getEntryDirectory(String fingerprint) {
+        return new File(mCacheDirectory, fingerprint);
+    }
+
+    private long getEntrySize(File entryDir) {
+        try {
+            return Long.parseLong(Files.readString(new File(entryDir, SIZE_FILE).toPath()).trim());
+        } catch (IOException | NumberFormatException ex) {
+            return FileUtils.sizeOfDirectory(entryDir);
+        }
+    }
+
+    private boolean isExplodedModule(Path dir) {
+        return Files.isRegularFile(dir.resolve("module-info.class"));
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void update(MessageDigest digest, String key, String value) {
+        digest.update("%s=%s\n".formatted(key, Objects.toString(value, "")).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Hash every file of an exploded module by its relative path and content.
+     */
+    private void updateExplodedModule(MessageDigest digest, Path dir) throws IOException {
+        List<Path> files;
+        try (var stream = Files.walk(dir)) {
+            files = stream.filter(Files::isRegularFile).sorted().toList();
+        }
+
+        for (var file : files) {
+            update(digest, dir.getFileName() + "/" + dir.relativize(file), getContentDigest(file));
+        }
+    }
+
+    /**
+     * Hash an entry of the module path like the module finder reads it, a
+     * packaged module, an exploded module or a directory of those.
+     */
+    private void updateModulePath(MessageDigest digest, Path entry) throws IOException {
+        if (Files.isRegularFile(entry)) {
+            update(digest, entry.getFileName().toString(), getContentDigest(entry));
+        } else if (isExplodedModule(entry)) {
+            updateExplodedModule(digest, entry);
+        } else if (Files.isDirectory(entry)) {
+            var paths = new ArrayList<Path>();
+            try (var stream = Files.list(entry)) {
+                stream.forEach(paths::add);
+            }
+            paths.sort(Comparator.comparing(Path::toString));
+
+            for (var path : paths) {
+                if (Files.isRegularFile(path) && StringUtils.endsWithAny(path.getFileName().toString(), ".jmod", ".jar")) {
+                    update(digest, path.getFileName().toString(), getContentDigest(path));
+                } else if (isExplodedModule(path)) {
+                    updateExplodedModule(digest, path);
+                }
+            }
+        } else {
+            update(digest, "entry", entry.toAbsolutePath().toString());
+        }
+    }
+
+    private static class Holder {
+
+        private static final LinkCache INSTANCE = new LinkCache();
+    }
+}
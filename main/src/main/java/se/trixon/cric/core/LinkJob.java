@@ -0,0 +1,203 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One jlink invocation, the whole task or one of its targets.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class LinkJob {
+
+    private String mCacheStatus;
+    private final List<String> mCommand;
+    private long mDuration;
+    private PrintWriter mErr;
+    private String mFingerprint;
+    private ImageAnalysis mImageAnalysis;
+    private Manifest.Diff mManifestDiff;
+    private String mMode;
+    private final String mName;
+    private PrintWriter mOut;
+    private final File mOutput;
+    private ResourceUsage mResourceUsage;
+    private volatile int mResult = -1;
+    private final File mStaging;
+    private final Task.Target mTarget;
+    private final Task mTask;
+
+    /**
+     * Create the jobs of a task, one per target or a single one for a task
+     * without targets.
+     *
+     * @param task
+     * @return
+     */
+    public static List<LinkJob> of(Task task) {
+        var linkJobs = new ArrayList<LinkJob>();
+
+        if (task.getTargets().isEmpty()) {
+            linkJobs.add(new LinkJob(task, null));
+        } else {
+            for (var target : task.getTargets()) {
+                linkJobs.add(new LinkJob(task, target));
+            }
+        }
+
+        return linkJobs;
+    }
+
+    public LinkJob(Task task, Task.Target target) {
+        mTask = task;
+        mTarget = target;
+        mName = target == null ? task.getName() : target.getName();
+        mOutput = task.getOutput(target);
+        mStaging = OutputStaging.getInstance().getStagingDirectory(mOutput);
+        mCommand = task.getCommand(target);
+        mCommand.set(mCommand.indexOf("--output") + 1, mStaging.getPath());
+    }
+
+    public String getCacheStatus() {
+        return mCacheStatus;
+    }
+
+    public List<String> getCommand() {
+        return mCommand;
+    }
+
+    /**
+     * @return the wall time of the link in nanoseconds
+     */
+    public long getDuration() {
+        return mDuration;
+    }
+
+    public PrintWriter getErr() {
+        return mErr;
+    }
+
+    /**
+     * @return the link cache fingerprint of the job, or null if not computed
+     */
+    public String getFingerprint() {
+        return mFingerprint;
+    }
+
+    /**
+     * @return the size breakdown of the new image, or null
+     */
+    public ImageAnalysis getImageAnalysis() {
+        return mImageAnalysis;
+    }
+
+    /**
+     * @return the changes of the output since the previous image, or null
+     */
+    public Manifest.Diff getManifestDiff() {
+        return mManifestDiff;
+    }
+
+    public String getMode() {
+        return mMode;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public PrintWriter getOut() {
+        return mOut;
+    }
+
+    public File getOutput() {
+        return mOutput;
+    }
+
+    /**
+     * @return the resources used by jlink, or null for a cached link
+     */
+    public ResourceUsage getResourceUsage() {
+        return mResourceUsage;
+    }
+
+    public int getResult() {
+        return mResult;
+    }
+
+    /**
+     * @return the directory jlink writes to, moved to the output on success
+     */
+    public File getStaging() {
+        return mStaging;
+    }
+
+    public Task.Target getTarget() {
+        return mTarget;
+    }
+
+    public Task getTask() {
+        return mTask;
+    }
+
+    public boolean isSuccess() {
+        return mResult == 0;
+    }
+
+    public void setCacheStatus(String cacheStatus) {
+        mCacheStatus = cacheStatus;
+    }
+
+    public void setDuration(long duration) {
+        mDuration = duration;
+    }
+
+    public void setErr(PrintWriter err) {
+        mErr = err;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        mFingerprint = fingerprint;
+    }
+
+    public void setImageAnalysis(ImageAnalysis imageAnalysis) {
+        mImageAnalysis = imageAnalysis;
+    }
+
+    public void setManifestDiff(Manifest.Diff manifestDiff) {
+        mManifestDiff = manifestDiff;
+    }
+
+    public void setMode(String mode) {
+        mMode = mode;
+    }
+
+    public void setOut(PrintWriter out) {
+        mOut = out;
+    }
+
+    public void setResourceUsage(ResourceUsage resourceUsage) {
+        mResourceUsage = resourceUsage;
+    }
+
+    public void setResult(int result) {
+        mResult = result;
+    }
+}
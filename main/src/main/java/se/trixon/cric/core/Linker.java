@@ -0,0 +1,376 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import com.sun.management.OperatingSystemMXBean;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.spi.ToolProvider;
+
+/**
+ * Runs link jobs, through the link cache, in-process or as a jlink process,
+ * and finishes their staged images.
+ * <p>
+ * Only depends on the output writers of the jobs and a problem listener so it
+ * can be used both from the platform and from the command line.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class Linker {
+
+    /**
+     * Shared by all linkers, so a batch of tasks with several targets each
+     * never runs more than {@link #getConcurrency()} jlinks at once.
+     */
+    private static final Semaphore JLINK_PERMITS = new Semaphore(getConcurrency(), true);
+    private static final Logger LOGGER = Logger.getLogger(Linker.class.getName());
+    private static final long MEMORY_PER_LINK = 1536 * 1024 * 1024L;
+    private final LinkCache mLinkCache = LinkCache.getInstance();
+    private final Options mOptions = Options.getInstance();
+
+    /**
+     * Calculate the number of concurrent links, bounded by the number of cores
+     * and by the physical memory available for the jlink processes.
+     *
+     * @return
+     */
+    public static int getConcurrency() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        long memory = Long.MAX_VALUE;
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof OperatingSystemMXBean osBean) {
+            memory = osBean.getTotalMemorySize();
+        }
+
+        return (int) Math.max(1, Math.min(cores, memory / MEMORY_PER_LINK));
+    }
+
+    public Linker() {
+    }
+
+    /**
+     * Break down the size of the staged images and fail the link jobs
+     * exceeding the size budget of their task, so they never replace their
+     * outputs.
+     *
+     * @param linkJobs
+     * @param problemListener
+     */
+    public void analyze(List<LinkJob> linkJobs, ProblemListener problemListener) {
+        for (var linkJob : linkJobs) {
+            if (linkJob.isSuccess()) {
+                try {
+                    var imageAnalysis = ImageAnalysis.of(linkJob.getStaging());
+                    linkJob.setImageAnalysis(imageAnalysis);
+                    var problem = imageAnalysis.checkBudget(linkJob.getTask().getSizeBudget());
+                    if (problem != null) {
+                        problemListener.onProblem(linkJob, Level.SEVERE, problem);
+                        linkJob.setResult(-1);
+                    }
+                } catch (IOException | UncheckedIOException ex) {
+                    problemListener.onProblem(linkJob, Level.WARNING, "Failed to analyze the image: %s".formatted(ex));
+                }
+            }
+        }
+    }
+
+    /**
+     * Analyze the staged images, move the successful ones into place and
+     * update their manifests.
+     *
+     * @param linkJobs
+     * @param problemListener
+     */
+    public void finish(List<LinkJob> linkJobs, ProblemListener problemListener) {
+        analyze(linkJobs, problemListener);
+        swap(linkJobs, true, problemListener);
+        updateManifests(linkJobs, problemListener);
+    }
+
+    public void link(LinkJob linkJob) {
+        var startTime = System.nanoTime();
+        linkJob.setResult(linkCached(linkJob));
+        linkJob.setDuration(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Link without the link cache, for measurements.
+     *
+     * @param linkJob
+     */
+    public void linkUncached(LinkJob linkJob) {
+        var startTime = System.nanoTime();
+        linkJob.setResult(runJlink(linkJob));
+        linkJob.setDuration(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Link the jobs, concurrently if there are more than one, and return when
+     * all of them have ended. A job that throws is marked as failed.
+     *
+     * @param linkJobs
+     */
+    public void link(List<LinkJob> linkJobs) {
+        if (linkJobs.size() == 1) {
+            link(linkJobs.getFirst());
+            return;
+        }
+
+        var executorService = Executors.newFixedThreadPool(Math.min(linkJobs.size(), getConcurrency()));
+        var futures = new ArrayList<Future<?>>();
+        for (var linkJob : linkJobs) {
+            futures.add(executorService.submit(() -> link(linkJob)));
+        }
+        executorService.shutdown();
+
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException ex) {
+                executorService.shutdownNow();
+                try {
+                    executorService.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException ex1) {
+                    // nvm
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException ex) {
+                var linkJob = linkJobs.get(i);
+                LOGGER.log(Level.SEVERE, null, ex.getCause());
+                linkJob.getErr().println(ex.getCause());
+                linkJob.setResult(-1);
+            }
+        }
+    }
+
+    /**
+     * Move the images of the successful link jobs into place and drop the
+     * rest, a failed or canceled link leaves the existing output untouched.
+     *
+     * @param linkJobs
+     * @param commit false to drop all images, like for a canceled run
+     * @param problemListener
+     */
+    public void swap(List<LinkJob> linkJobs, boolean commit, ProblemListener problemListener) {
+        var outputStaging = OutputStaging.getInstance();
+        for (var linkJob : linkJobs) {
+            if (commit && linkJob.isSuccess()) {
+                try {
+                    outputStaging.commit(linkJob);
+                } catch (IOException ex) {
+                    problemListener.onProblem(linkJob, Level.SEVERE, "Failed to replace %s: %s".formatted(linkJob.getOutput(), ex));
+                    linkJob.setResult(-1);
+                    outputStaging.discard(linkJob);
+                }
+            } else {
+                outputStaging.discard(linkJob);
+            }
+        }
+    }
+
+    /**
+     * Hash the files of the new images and compare them to the manifests of
+     * the images they replaced.
+     *
+     * @param linkJobs
+     * @param problemListener
+     */
+    public void updateManifests(List<LinkJob> linkJobs, ProblemListener problemListener) {
+        for (var linkJob : linkJobs) {
+            if (linkJob.isSuccess()) {
+                try {
+                    linkJob.setManifestDiff(Manifest.update(linkJob));
+                } catch (IOException ex) {
+                    problemListener.onProblem(linkJob, Level.WARNING, "Failed to create the manifest: %s".formatted(ex));
+                }
+            }
+        }
+    }
+
+    private int linkCached(LinkJob linkJob) {
+        if (!mOptions.isLinkCache()) {
+            return runJlink(linkJob);
+        }
+
+        String fingerprint;
+        var event = FlightRecording.beginPhase(linkJob, "fingerprint");
+        try {
+            fingerprint = mLinkCache.fingerprint(linkJob.getCommand());
+            linkJob.setFingerprint(fingerprint);
+        } catch (IOException ex) {
+            linkJob.getErr().println(ex);
+            linkJob.setCacheStatus("disabled, " + ex.getMessage());
+            return runJlink(linkJob);
+        } finally {
+            event.commit();
+        }
+
+        event = FlightRecording.beginPhase(linkJob, "cache restore");
+        var restored = mLinkCache.restore(fingerprint, linkJob.getStaging());
+        event.commit();
+        if (restored) {
+            linkJob.setCacheStatus("hit %s".formatted(fingerprint));
+            linkJob.setMode("cache");
+            return 0;
+        }
+
+        linkJob.setCacheStatus("miss %s".formatted(fingerprint));
+        var result = runJlink(linkJob);
+        if (result == 0) {
+            event = FlightRecording.beginPhase(linkJob, "cache store");
+            mLinkCache.store(fingerprint, linkJob.getStaging());
+            event.commit();
+        }
+
+        return result;
+    }
+
+    private void pump(BufferedReader reader, PrintWriter writer) {
+        try (reader) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                writer.println(line);
+            }
+        } catch (IOException ex) {
+            // the process is gone
+        } finally {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Run jlink in-process when the selected jlink has the same version as
+     * the running JDK and no JVM options are requested for it, otherwise
+     * spawn the jlink executable. Waits for a free jlink permit first.
+     */
+    private int runJlink(LinkJob linkJob) {
+        try {
+            JLINK_PERMITS.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+
+        try {
+            var command = linkJob.getCommand();
+            if (mOptions.isJlinkInProcess()
+                    && command.stream().noneMatch(arg -> arg.startsWith("-J"))
+                    && Jdk.of(new File(command.getFirst())).isRuntimeVersion()) {
+                var toolProvider = ToolProvider.findFirst("jlink");
+                if (toolProvider.isPresent()) {
+                    return runToolProvider(toolProvider.get(), linkJob);
+                }
+            }
+
+            return runProcess(linkJob);
+        } finally {
+            JLINK_PERMITS.release();
+        }
+    }
+
+    private int runProcess(LinkJob linkJob) {
+        linkJob.setMode("process");
+        Process process;
+        var event = FlightRecording.beginPhase(linkJob, "spawn");
+        try {
+            process = new ProcessBuilder(linkJob.getCommand()).start();
+        } catch (IOException ex) {
+            linkJob.getErr().println(ex);
+            return -1;
+        } finally {
+            event.commit();
+        }
+
+        var processMonitor = ProcessMonitor.start(process.toHandle());
+        var outPump = Thread.ofPlatform().name("Linker-out").start(() -> pump(process.inputReader(), linkJob.getOut()));
+        var errPump = Thread.ofPlatform().name("Linker-err").start(() -> pump(process.errorReader(), linkJob.getErr()));
+
+        try {
+            event = FlightRecording.beginPhase(linkJob, "jlink");
+            var result = process.waitFor();
+            linkJob.setResourceUsage(processMonitor.stop());
+            event.commit();
+
+            event = FlightRecording.beginPhase(linkJob, "drain");
+            outPump.join();
+            errPump.join();
+            event.commit();
+
+            return result;
+        } catch (InterruptedException ex) {
+            linkJob.setResourceUsage(processMonitor.stop());
+            process.descendants().forEach(ProcessHandle::destroy);
+            process.destroy();
+            Thread.currentThread().interrupt();
+
+            return -1;
+        }
+    }
+
+    private int runToolProvider(ToolProvider toolProvider, LinkJob linkJob) {
+        linkJob.setMode("in-process");
+        var command = linkJob.getCommand();
+        var out = linkJob.getOut();
+        var err = linkJob.getErr();
+        out.println("(in-process %s %s)".formatted(toolProvider.name(), Runtime.version()));
+
+        var event = FlightRecording.beginPhase(linkJob, "jlink");
+        var threadBean = ManagementFactory.getThreadMXBean();
+        var cpuTime = threadBean.getCurrentThreadCpuTime();
+        try {
+            return toolProvider.run(out, err, command.subList(1, command.size()).toArray(String[]::new));
+        } catch (RuntimeException ex) {
+            err.println(ex);
+            LOGGER.log(Level.SEVERE, null, ex);
+
+            return -1;
+        } finally {
+            // only the cpu time of the linking thread can be told apart in-process
+            if (cpuTime >= 0) {
+                var resourceUsage = new ResourceUsage();
+                resourceUsage.setCpuTime((threadBean.getCurrentThreadCpuTime() - cpuTime) / 1_000_000);
+                linkJob.setResourceUsage(resourceUsage);
+            }
+            event.commit();
+            out.flush();
+            err.flush();
+        }
+    }
+
+    public interface ProblemListener {
+
+        /**
+         * @param linkJob
+         * @param level {@link Level#SEVERE} for a problem failing the job,
+         * {@link Level#WARNING} otherwise
+         * @param message
+         */
+        void onProblem(LinkJob linkJob, Level level, String message);
+    }
+}
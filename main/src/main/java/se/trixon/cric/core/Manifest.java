@@ -0,0 +1,275 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.SerializedName;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * SHA-256 digest and size of every file of an image.
+ * <p>
+ * The files are hashed in parallel, each thread reading through its own
+ * reused direct buffer, so no mappings are left to keep the files open until
+ * they are garbage collected. The manifest of the last image of every link
+ * job is kept in the manifest directory, so a new image can be compared to
+ * the one it replaced.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class Manifest {
+
+    private static final Gson GSON = new GsonBuilder().create();
+    private static final Logger LOGGER = Logger.getLogger(Manifest.class.getName());
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect((int) FileUtils.ONE_MB));
+    @SerializedName("created")
+    private long mCreated;
+    @SerializedName("files")
+    private TreeMap<String, Entry> mFiles = new TreeMap<>();
+
+    /**
+     * Hash every file below root.
+     *
+     * @param root
+     * @return
+     * @throws IOException
+     */
+    public static Manifest create(Path root) throws IOException {
+        List<Path> paths;
+        try (var stream = Files.walk(root)) {
+            paths = stream.filter(Files::isRegularFile).toList();
+        }
+
+        var files = new ConcurrentHashMap<String, Entry>();
+        try {
+            paths.parallelStream().forEach(path -> {
+                try {
+                    var name = root.relativize(path).toString().replace(File.separatorChar, '/');
+                    files.put(name, new Entry(Files.size(path), digest(path)));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        var manifest = new Manifest();
+        manifest.mCreated = System.currentTimeMillis();
+        manifest.mFiles.putAll(files);
+
+        return manifest;
+    }
+
+    /**
+     * Create the manifest of the output of a successful link job, compare it
+     * to the stored manifest of the previous output and store the new one.
+     *
+     * @param linkJob
+     * @return the differences, or null if there was no previous manifest
+     * @throws IOException
+     */
+    public static Diff update(LinkJob linkJob) throws IOException {
+        var manifest = create(linkJob.getOutput().toPath());
+        var file = getFile(linkJob);
+        var previous = read(file);
+        manifest.write(file);
+
+        return previous == null ? null : manifest.diff(previous);
+    }
+
+    private static String digest(Path path) throws IOException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+
+        var buffer = BUFFER.get();
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                messageDigest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        return HexFormat.of().formatHex(messageDigest.digest());
+    }
+
+    private static File getFile(LinkJob linkJob) {
+        var name = linkJob.getTask().getId();
+        if (linkJob.getTarget() != null) {
+            name += "." + linkJob.getName().replaceAll("[^\\w.]", "_");
+        }
+
+        return new File(StorageManager.getInstance().getManifestDirectory(), name + ".json");
+    }
+
+    private static Manifest read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try {
+            return GSON.fromJson(Files.readString(file.toPath(), StandardCharsets.UTF_8), Manifest.class);
+        } catch (IOException | JsonParseException ex) {
+            LOGGER.log(Level.WARNING, "Failed to read " + file, ex);
+            return null;
+        }
+    }
+
+    public Manifest() {
+    }
+
+    /**
+     * @param previous
+     * @return the files added, removed and changed since previous
+     */
+    public Diff diff(Manifest previous) {
+        var diff = new Diff();
+        mFiles.forEach((name, entry) -> {
+            var previousEntry = previous.mFiles.get(name);
+            if (previousEntry == null) {
+                diff.mAdded.add(name);
+            } else if (!entry.equals(previousEntry)) {
+                diff.mChanged.add(name);
+            }
+        });
+        previous.mFiles.keySet().stream()
+                .filter(name -> !mFiles.containsKey(name))
+                .forEachOrdered(diff.mRemoved::add);
+        diff.mSizeDelta = getSize() - previous.getSize();
+
+        return diff;
+    }
+
+    public long getCreated() {
+        return mCreated;
+    }
+
+    public Map<String, Entry> getFiles() {
+        return mFiles;
+    }
+
+    public long getSize() {
+        return mFiles.values().stream().mapToLong(Entry::getSize).sum();
+    }
+
+    public void write(File file) throws IOException {
+        FileUtils.forceMkdirParent(file);
+        var tempFile = new File(file.getPath() + ".tmp");
+        Files.writeString(tempFile.toPath(), GSON.toJson(this), StandardCharsets.UTF_8);
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static class Diff {
+
+        private final List<String> mAdded = new ArrayList<>();
+        private final List<String> mChanged = new ArrayList<>();
+        private final List<String> mRemoved = new ArrayList<>();
+        private long mSizeDelta;
+
+        public List<String> getAdded() {
+            return mAdded;
+        }
+
+        public List<String> getChanged() {
+            return mChanged;
+        }
+
+        public List<String> getRemoved() {
+            return mRemoved;
+        }
+
+        public long getSizeDelta() {
+            return mSizeDelta;
+        }
+
+        public boolean isEmpty() {
+            return mAdded.isEmpty() && mChanged.isEmpty() && mRemoved.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "%d added, %d removed, %d changed, %s%s".formatted(
+                    mAdded.size(),
+                    mRemoved.size(),
+                    mChanged.size(),
+                    mSizeDelta < 0 ? "-" : "+",
+                    FileUtils.byteCountToDisplaySize(Math.abs(mSizeDelta))
+            );
+        }
+    }
+
+    public static class Entry {
+
+        @SerializedName("sha256")
+        private String mSha256;
+        @SerializedName("size")
+        private long mSize;
+
+        public Entry() {
+        }
+
+        public Entry(long size, String sha256) {
+            mSize = size;
+            mSha256 = sha256;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Entry entry && mSize == entry.mSize && mSha256.equals(entry.mSha256);
+        }
+
+        public String getSha256() {
+            return mSha256;
+        }
+
+        public long getSize() {
+            return mSize;
+        }
+
+        @Override
+        public int hashCode() {
+            return mSha256.hashCode();
+        }
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.IOException;
+import java.lang.module.ModuleDescriptor;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Persistent catalog of the jmod files in module path directories.
+ * <p>
+ * The catalog is stored in the user directory and keyed by directory and by
+ * the size and modification time of every jmod, so only new or changed jmods
+ * are read when a directory is refreshed. Changed jmods are read in parallel
+ * through {@link JmodReader}, refreshes run in the background and refreshed
+ * directories are watched for changes.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class ModuleCatalog {
+
+    private static final Logger LOGGER = Logger.getLogger(ModuleCatalog.class.getName());
+    private static final Gson GSON = new GsonBuilder().create();
+    private final File mCatalogFile;
+    private final Map<String, Map<String, Entry>> mDirectories = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService mExecutorService;
+    private final List<Consumer<File>> mListeners = new CopyOnWriteArrayList<>();
+    private ScheduledFuture<?> mSaveFuture;
+    private final Map<String, ScheduledFuture<?>> mScheduledRefreshes = new ConcurrentHashMap<>();
+    private final Map<WatchKey, File> mWatchKeys = new ConcurrentHashMap<>();
+    private WatchService mWatchService;
+
+    public static ModuleCatalog getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private ModuleCatalog() {
+        mCatalogFile = StorageManager.getInstance().getModuleCatalogFile();
+        mExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "ModuleCatalog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        load();
+    }
+
+    /**
+     * Add a listener that is notified, on a background thread, with the
+     * directory whenever the modules of a directory have changed.
+     *
+     * @param listener
+     */
+    public void addListener(Consumer<File> listener) {
+        mListeners.add(listener);
+    }
+
+    /**
+     * @param dir
+     * @return the cataloged modules of dir, possibly stale or empty until the
+     * directory has been refreshed
+     */
+    public List<Entry> getEntries(File dir) {
+        var entries = mDirectories.get(getKey(dir));
+
+        return entries == null ? List.of() : List.copyOf(entries.values());
+    }
+
+    /**
+     * @param dir
+     * @return the readable module descriptors of dir by module name
+     */
+    public Map<String, ModuleDescriptor> getDescriptors(File dir) {
+        var descriptors = new HashMap<String, ModuleDescriptor>();
+        for (var entry : getEntries(dir)) {
+            var descriptor = entry.getDescriptor();
+            if (descriptor != null) {
+                descriptors.put(descriptor.name(), descriptor);
+            }
+        }
+
+        return descriptors;
+    }
+
+    public TreeSet<String> getModuleNames(File dir) {
+        var names = new TreeSet<String>();
+        for (var entry : getEntries(dir)) {
+            names.add(entry.getName());
+        }
+
+        return names;
+    }
+
+    /**
+     * Refresh the catalog of a directory in the background, only reading the
+     * jmods that are new or changed since the last refresh.
+     *
+     * @param dir
+     * @return the refreshed entries
+     */
+    public CompletableFuture<List<Entry>> refresh(File dir) {
+        return CompletableFuture.supplyAsync(() -> {
+            refreshNow(dir);
+            watch(dir);
+
+            return getEntries(dir);
+        }, mExecutorService);
+    }
+
+    public void removeListener(Consumer<File> listener) {
+        mListeners.remove(listener);
+    }
+
+    Entry read(File file) throws IOException {
+        return new Entry(file, JmodReader.readModuleInfo(file.toPath()));
+    }
+
+    private String getKey(File dir) {
+        return dir.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    private void load() {
+        if (!mCatalogFile.isFile()) {
+            return;
+        }
+
+        try {
+            var json = Files.readString(mCatalogFile.toPath(), StandardCharsets.UTF_8);
+            Map<String, Map<String, Entry>> directories = GSON.fromJson(json, new TypeToken<HashMap<String, HashMap<String, Entry>>>() {
+            }.getType());
+
+            if (directories != null) {
+                directories.forEach((key, entries) -> mDirectories.put(key, Collections.unmodifiableMap(entries)));
+            }
+        } catch (IOException | JsonParseException ex) {
+            LOGGER.log(Level.WARNING, "Ignoring unreadable module catalog", ex);
+        }
+    }
+
+    private void refreshNow(File dir) {
+        var key = getKey(dir);
+        var oldEntries = mDirectories.getOrDefault(key, Map.of());
+        var files = dir.listFiles(file -> file.isFile() && file.getName().endsWith(".jmod"));
+
+        if (files == null) {
+            if (mDirectories.remove(key) != null) {
+                changed(dir);
+            }
+            return;
+        }
+
+        var entries = new ConcurrentHashMap<String, Entry>();
+        var changedFiles = new ArrayList<File>();
+        for (var file : files) {
+            var entry = oldEntries.get(file.getName());
+            if (entry == null || entry.mSize != file.length() || entry.mLastModified != file.lastModified()) {
+                changedFiles.add(file);
+            } else {
+                entries.put(file.getName(), entry);
+            }
+        }
+
+        changedFiles.parallelStream().forEach(file -> {
+            Entry entry;
+            try {
+                entry = read(file);
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Failed to read module descriptor of " + file, ex);
+                entry = new Entry(file, null);
+            }
+
+            entries.put(file.getName(), entry);
+        });
+
+        boolean modified = !changedFiles.isEmpty() || files.length != oldEntries.size();
+        if (modified) {
+            mDirectories.put(key, Collections.unmodifiableMap(new HashMap<>(entries)));
+            changed(dir);
+        }
+    }
+
+    private void changed(File dir) {
+        mListeners.forEach(listener -> listener.accept(dir));
+
+        if (mSaveFuture != null) {
+            mSaveFuture.cancel(false);
+        }
+        mSaveFuture = mExecutorService.schedule(this::save, 2, TimeUnit.SECONDS);
+    }
+
+    private void save() {
+        try {
+            var tempFile = new File(mCatalogFile.getPath() + ".tmp");
+            Files.createDirectories(mCatalogFile.getParentFile().toPath());
+            Files.writeString(tempFile.toPath(), GSON.toJson(mDirectories), StandardCharsets.UTF_8);
+            Files.move(tempFile.toPath(), mCatalogFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to save module catalog", ex);
+        }
+    }
+
+    private synchronized void watch(File dir) {
+        if (mWatchKeys.containsValue(dir)) {
+            return;
+        }
+
+        try {
+            if (mWatchService == null) {
+                mWatchService = dir.toPath().getFileSystem().newWatchService();
+                var thread = new Thread(this::watchLoop, "ModuleCatalog-watch");
+                thread.setDaemon(true);
+                thread.start();
+            }
+
+            var watchKey = dir.toPath().register(mWatchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            mWatchKeys.put(watchKey, dir);
+        } catch (IOException | UnsupportedOperationException ex) {
+            LOGGER.log(Level.FINE, "Unable to watch " + dir, ex);
+        }
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                var watchKey = mWatchService.take();
+                var dir = mWatchKeys.get(watchKey);
+                watchKey.pollEvents();
+
+                if (!watchKey.reset()) {
+                    mWatchKeys.remove(watchKey);
+                }
+
+                if (dir != null) {
+                    var previous = mScheduledRefreshes.put(getKey(dir), mExecutorService.schedule(() -> refreshNow(dir), 500, TimeUnit.MILLISECONDS));
+                    if (previous != null) {
+                        previous.cancel(false);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // done
+        }
+    }
+
+    public static class Entry {
+
+        @SerializedName("descriptor")
+        private String mDescriptor;
+        private transient ModuleDescriptor mModuleDescriptor;
+        @SerializedName("lastModified")
+        private long mLastModified;
+        @SerializedName("name")
+        private String mName;
+        @SerializedName("size")
+        private long mSize;
+        @SerializedName("version")
+        private String mVersion;
+
+        public Entry() {
+        }
+
+        Entry(File file, byte[] moduleInfo) {
+            mSize = file.length();
+            mLastModified = file.lastModified();
+            mName = FilenameUtils.getBaseName(file.getName());
+
+            if (moduleInfo != null) {
+                mDescriptor = Base64.getEncoder().encodeToString(moduleInfo);
+                var descriptor = getDescriptor();
+                mName = descriptor.name();
+                mVersion = descriptor.rawVersion().orElse(null);
+            }
+        }
+
+        /**
+         * @return the module descriptor, or null if the module-info could not
+         * be read
+         */
+        public synchronized ModuleDescriptor getDescriptor() {
+            if (mModuleDescriptor == null && mDescriptor != null) {
+                mModuleDescriptor = ModuleDescriptor.read(ByteBuffer.wrap(Base64.getDecoder().decode(mDescriptor)));
+            }
+
+            return mModuleDescriptor;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public String getVersion() {
+            return mVersion;
+        }
+    }
+
+    private static class Holder {
+
+        private static final ModuleCatalog INSTANCE = new ModuleCatalog();
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import java.io.File;
+import java.lang.module.FindException;
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleFinder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Module graph of the module path directories of a task, built from the
+ * cataloged jmod descriptors and the modular jars of the directories.
+ * <p>
+ * Like on a module path, the first directory containing a module wins. The
+ * jmods directory of the JDK of the task is appended when no module path
+ * directory provides java.base.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class ModuleGraph {
+
+    private static final Logger LOGGER = Logger.getLogger(ModuleGraph.class.getName());
+    private final List<String> mConflicts = new ArrayList<>();
+    private final Map<String, ModuleDescriptor> mDescriptors = new HashMap<>();
+    private final Map<String, List<File>> mDuplicates = new TreeMap<>();
+    private final Map<String, File> mLocations = new LinkedHashMap<>();
+    private final Map<String, List<String>> mProviders = new HashMap<>();
+
+    /**
+     * Build the graph of the module paths of a task, refreshing the catalog
+     * of each directory first. This blocks until the catalog is up to date
+     * and should not be called on the UI thread.
+     *
+     * @param task
+     * @return
+     */
+    public static ModuleGraph of(Task task) {
+        return of(task, null);
+    }
+
+    /**
+     * Build the graph of the module path of one of the targets of a task,
+     * with the jmods of the target first.
+     *
+     * @param task
+     * @param target the target, or null for a task without targets
+     * @return
+     */
+    public static ModuleGraph of(Task task, Task.Target target) {
+        var dirs = new ArrayList<File>();
+        if (target != null && target.getJmods() != null) {
+            dirs.add(target.getJmods());
+        }
+        for (var modulePath : task.getModulePaths()) {
+            if (modulePath.getDirectory() != null) {
+                dirs.add(modulePath.getDirectory());
+            }
+        }
+
+        if (task.getJlink() != null && dirs.stream().noneMatch(dir -> new File(dir, "java.base.jmod").isFile())) {
+            dirs.add(Jdk.of(task.getJlink()).getJmods());
+        }
+
+        return new ModuleGraph(dirs);
+    }
+
+    public ModuleGraph(List<File> dirs) {
+        var moduleCatalog = ModuleCatalog.getInstance();
+
+        for (var dir : new LinkedHashSet<>(dirs)) {
+            if (!dir.isDirectory()) {
+                continue;
+            }
+
+            moduleCatalog.refresh(dir).join();
+            moduleCatalog.getDescriptors(dir).values().forEach(descriptor -> add(descriptor, dir));
+
+            try {
+                for (var reference : ModuleFinder.of(dir.toPath()).findAll()) {
+                    add(reference.descriptor(), dir);
+                }
+            } catch (FindException ex) {
+                LOGGER.log(Level.WARNING, "Failed to find the modular jars of " + dir, ex);
+                mConflicts.add(ex.getMessage());
+            }
+        }
+
+        for (var descriptor : mDescriptors.values()) {
+            for (var provides : descriptor.provides()) {
+                mProviders.computeIfAbsent(provides.service(), k -> new ArrayList<>()).add(descriptor.name());
+            }
+        }
+    }
+
+    /**
+     * @param roots
+     * @param bindServices also include the modules providing services used
+     * by the modules in the closure, like jlink --bind-services
+     * @param missing receives the required modules not found in the graph,
+     * may be null
+     * @return the names of all modules that are linked for the roots
+     */
+    public TreeSet<String> closure(Collection<String> roots, boolean bindServices, Set<String> missing) {
+        var closure = new TreeSet<String>();
+        var queue = new ArrayDeque<String>(roots);
+
+        while (!queue.isEmpty()) {
+            var name = queue.poll();
+            if (!closure.add(name)) {
+                continue;
+            }
+
+            var descriptor = mDescriptors.get(name);
+            if (descriptor == null) {
+                closure.remove(name);
+                if (missing != null) {
+                    missing.add(name);
+                }
+                continue;
+            }
+
+            for (var requires : descriptor.requires()) {
+                if (!requires.modifiers().contains(ModuleDescriptor.Requires.Modifier.STATIC)) {
+                    queue.add(requires.name());
+                }
+            }
+
+            if (bindServices) {
+                for (var service : descriptor.uses()) {
+                    queue.addAll(mProviders.getOrDefault(service, List.of()));
+                }
+            }
+        }
+
+        return closure;
+    }
+
+    /**
+     * @return the modules found more than once in the same directory, which
+     * jlink refuses to link
+     */
+    public List<String> getConflicts() {
+        return mConflicts;
+    }
+
+    public ModuleDescriptor getDescriptor(String name) {
+        return mDescriptors.get(name);
+    }
+
+    public Map<String, ModuleDescriptor> getDescriptors() {
+        return mDescriptors;
+    }
+
+    /**
+     * @return the modules found in more than one directory, with the
+     * directories in module path order, the first one shadowing the others
+     */
+    public Map<String, List<File>> getDuplicates() {
+        return mDuplicates;
+    }
+
+    /**
+     * @param name
+     * @return the directory the module is found in, or null
+     */
+    public File getLocation(String name) {
+        return mLocations.get(name);
+    }
+
+    /**
+     * @param modules
+     * @param bindServices
+     * @return the modules that are not in the closure of any of the other
+     * modules, i.e. the ones that would have to be selected to link the same
+     * image
+     */
+    public TreeSet<String> getTopLevel(Collection<String> modules, boolean bindServices) {
+        var topLevel = new TreeSet<String>(modules);
+        topLevel.removeIf(name -> !mDescriptors.containsKey(name));
+
+        for (var module : new ArrayList<>(topLevel)) {
+            var others = new TreeSet<>(topLevel);
+            others.remove(module);
+            if (closure(others, bindServices, null).contains(module)) {
+                topLevel.remove(module);
+            }
+        }
+
+        return topLevel;
+    }
+
+    /**
+     * Resolve the root modules of an application, i.e. the modules its code
+     * is in and the module of its launcher.
+     *
+     * @param roots
+     * @param bindServices
+     * @return
+     */
+    public Resolution resolve(Collection<String> roots, boolean bindServices) {
+        var missing = new TreeSet<String>();
+        var closure = closure(roots, bindServices, missing);
+
+        return new Resolution(closure, missing);
+    }
+
+    private void add(ModuleDescriptor descriptor, File dir) {
+        var name = descriptor.name();
+        if (!mDescriptors.containsKey(name)) {
+            mDescriptors.put(name, descriptor);
+            mLocations.put(name, dir);
+        } else if (mLocations.get(name).equals(dir)) {
+            mConflicts.add("Module %s found more than once in %s".formatted(name, dir));
+        } else {
+            mDuplicates.computeIfAbsent(name, k -> new ArrayList<>(List.of(mLocations.get(name)))).add(dir);
+        }
+    }
+
+    public static class Resolution {
+
+        private final TreeSet<String> mClosure;
+        private final TreeSet<String> mMissing;
+
+        Resolution(TreeSet<String> closure, TreeSet<String> missing) {
+            mClosure = closure;
+            mMissing = missing;
+        }
+
+        /**
+         * @return all modules linked into the image
+         */
+        public TreeSet<String> getClosure() {
+            return mClosure;
+        }
+
+        /**
+         * @return the required modules that were not found
+         */
+        public TreeSet<String> getMissing() {
+            return mMissing;
+        }
+    }
+}
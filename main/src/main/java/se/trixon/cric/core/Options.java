@@ -15,8 +15,14 @@
  */
 package se.trixon.cric.core;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ChangeListener;
 import org.openide.util.NbPreferences;
 import se.trixon.almond.util.OptionsBase;
@@ -28,10 +34,25 @@ import se.trixon.cric.Cric;
  */
 public class Options extends OptionsBase {
 
+    private static final String KEY_BATCH_THREADS = "batch.threads";
+    private static final String KEY_JFR_BATCH = "jfr.batch";
     private static final String KEY_JLINK_DEBUG = "jlink.debug";
+    private static final String KEY_JLINK_IN_PROCESS = "jlink.in_process";
     private static final String KEY_JLINK_VERBOSE = "jlink.verbose";
+    private static final String KEY_JVM_PROFILE = "jlink.jvm_profile";
+    private static final String KEY_LINK_CACHE = "link.cache";
+    private static final String KEY_LINK_CACHE_SIZE = "link.cache.size";
+    private static final String KEY_OUTPUT_TAIL = "output.tail";
+    private static final Gson GSON = new Gson();
+    private final IntegerProperty mBatchThreadsProperty = new SimpleIntegerProperty();
+    private final BooleanProperty mJfrBatchProperty = new SimpleBooleanProperty();
     private final BooleanProperty mJlinkDebugProperty = new SimpleBooleanProperty();
+    private final BooleanProperty mJlinkInProcessProperty = new SimpleBooleanProperty();
     private final BooleanProperty mJlinkVerboseProperty = new SimpleBooleanProperty();
+    private final ObjectProperty<JvmProfile> mJvmProfileProperty = new SimpleObjectProperty<>();
+    private final BooleanProperty mLinkCacheProperty = new SimpleBooleanProperty();
+    private final IntegerProperty mLinkCacheSizeProperty = new SimpleIntegerProperty();
+    private final IntegerProperty mOutputTailProperty = new SimpleIntegerProperty();
 
     public static Options getInstance() {
         return Holder.INSTANCE;
@@ -40,48 +61,187 @@ public class Options extends OptionsBase {
     private Options() {
         setPreferences(NbPreferences.forModule(Cric.class));
 
+        mBatchThreadsProperty.set(getInt(KEY_BATCH_THREADS, 0));
+        mJfrBatchProperty.set(is(KEY_JFR_BATCH, false));
         mJlinkDebugProperty.set(is(KEY_JLINK_DEBUG, false));
+        mJlinkInProcessProperty.set(is(KEY_JLINK_IN_PROCESS, true));
         mJlinkVerboseProperty.set(is(KEY_JLINK_VERBOSE, true));
+        mJvmProfileProperty.set(loadJvmProfile());
+        mLinkCacheProperty.set(is(KEY_LINK_CACHE, true));
+        mLinkCacheSizeProperty.set(getInt(KEY_LINK_CACHE_SIZE, 4096));
+        mOutputTailProperty.set(getInt(KEY_OUTPUT_TAIL, 1000));
 
         initListeners();
     }
 
+    public IntegerProperty batchThreadsProperty() {
+        return mBatchThreadsProperty;
+    }
+
+    /**
+     * @return the number of concurrent batch links, 0 for automatic
+     */
+    public int getBatchThreads() {
+        return mBatchThreadsProperty.get();
+    }
+
+    /**
+     * @return true if a flight recording should be made of every batch
+     */
+    public boolean isJfrBatch() {
+        return mJfrBatchProperty.get();
+    }
+
+    /**
+     * @return the global JVM profile of jlink, used by tasks without their
+     * own
+     */
+    public JvmProfile getJvmProfile() {
+        return mJvmProfileProperty.get();
+    }
+
     public boolean isJlinkDebug() {
         return mJlinkDebugProperty.get();
     }
 
+    /**
+     * @return true if jlink should run in-process when it matches the running
+     * JDK
+     */
+    public boolean isJlinkInProcess() {
+        return mJlinkInProcessProperty.get();
+    }
+
     public boolean isJlinkVerbose() {
         return mJlinkVerboseProperty.get();
     }
 
+    public boolean isLinkCache() {
+        return mLinkCacheProperty.get();
+    }
+
+    /**
+     * @return the maximum size of the link cache in MB
+     */
+    public int getLinkCacheSize() {
+        return mLinkCacheSizeProperty.get();
+    }
+
+    /**
+     * @return the number of lines of a jlink run shown at the start and at
+     * the end in the output window
+     */
+    public int getOutputTail() {
+        return mOutputTailProperty.get();
+    }
+
+    public BooleanProperty jfrBatchProperty() {
+        return mJfrBatchProperty;
+    }
+
     public BooleanProperty jlinkDebugProperty() {
         return mJlinkDebugProperty;
     }
 
+    public BooleanProperty jlinkInProcessProperty() {
+        return mJlinkInProcessProperty;
+    }
+
     public BooleanProperty jlinkVerboseProperty() {
         return mJlinkVerboseProperty;
     }
 
+    public ObjectProperty<JvmProfile> jvmProfileProperty() {
+        return mJvmProfileProperty;
+    }
+
+    public BooleanProperty linkCacheProperty() {
+        return mLinkCacheProperty;
+    }
+
+    public IntegerProperty linkCacheSizeProperty() {
+        return mLinkCacheSizeProperty;
+    }
+
+    public IntegerProperty outputTailProperty() {
+        return mOutputTailProperty;
+    }
+
+    public void setBatchThreads(int batchThreads) {
+        mBatchThreadsProperty.set(batchThreads);
+    }
+
+    public void setJfrBatch(boolean jfrBatch) {
+        mJfrBatchProperty.set(jfrBatch);
+    }
+
     public void setJlinkDebug(boolean debug) {
         mJlinkDebugProperty.set(debug);
     }
 
+    public void setJlinkInProcess(boolean inProcess) {
+        mJlinkInProcessProperty.set(inProcess);
+    }
+
     public void setJlinkVerbose(boolean debug) {
         mJlinkVerboseProperty.set(debug);
     }
 
+    public void setJvmProfile(JvmProfile jvmProfile) {
+        mJvmProfileProperty.set(jvmProfile);
+    }
+
+    public void setLinkCache(boolean linkCache) {
+        mLinkCacheProperty.set(linkCache);
+    }
+
+    public void setLinkCacheSize(int linkCacheSize) {
+        mLinkCacheSizeProperty.set(linkCacheSize);
+    }
+
+    public void setOutputTail(int outputTail) {
+        mOutputTailProperty.set(outputTail);
+    }
+
     private void initListeners() {
         ChangeListener<Object> changeListener = (observable, oldValue, newValue) -> {
             save();
         };
 
+        mBatchThreadsProperty.addListener(changeListener);
+        mJfrBatchProperty.addListener(changeListener);
         mJlinkDebugProperty.addListener(changeListener);
+        mJlinkInProcessProperty.addListener(changeListener);
         mJlinkVerboseProperty.addListener(changeListener);
+        mJvmProfileProperty.addListener(changeListener);
+        mLinkCacheProperty.addListener(changeListener);
+        mLinkCacheSizeProperty.addListener(changeListener);
+        mOutputTailProperty.addListener(changeListener);
+    }
+
+    private JvmProfile loadJvmProfile() {
+        try {
+            var jvmProfile = GSON.fromJson(get(KEY_JVM_PROFILE, "{}"), JvmProfile.class);
+            if (jvmProfile != null) {
+                return jvmProfile;
+            }
+        } catch (JsonParseException ex) {
+            // nvm
+        }
+
+        return new JvmProfile();
     }
 
     private void save() {
+        put(KEY_BATCH_THREADS, getBatchThreads());
+        put(KEY_JFR_BATCH, isJfrBatch());
         put(KEY_JLINK_DEBUG, isJlinkDebug());
+        put(KEY_JLINK_IN_PROCESS, isJlinkInProcess());
         put(KEY_JLINK_VERBOSE, isJlinkVerbose());
+        put(KEY_JVM_PROFILE, GSON.toJson(getJvmProfile()));
+        put(KEY_LINK_CACHE, isLinkCache());
+        put(KEY_LINK_CACHE_SIZE, getLinkCacheSize());
+        put(KEY_OUTPUT_TAIL, getOutputTail());
     }
 
     private static class Holder {
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Output stage between a jlink run and an output window.
+ * <p>
+ * Lines are collected and written to the window in batches at a bounded
+ * rate. The first lines of a run, up to the configured tail, reach the window
+ * and after that at most the tail of the lines of every batch, preceded by
+ * the number of lines omitted since the previous batch. Every line is written
+ * to a gzipped log file.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class OutputPipeline implements Closeable {
+
+    private static final long FLUSH_INTERVAL = 200;
+    private static final Logger LOGGER = Logger.getLogger(OutputPipeline.class.getName());
+    private static final int MAX_LOGS_PER_PREFIX = 20;
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "OutputPipeline");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Channel mErr;
+    private final ScheduledFuture<?> mFlushFuture;
+    private Writer mLogWriter;
+    private final File mLogFile;
+    private final Channel mOut;
+    private final int mTail;
+
+    /**
+     * Create a pipeline logging to a new file in the output log directory,
+     * removing the oldest logs with the same prefix.
+     *
+     * @param prefix
+     * @param out
+     * @param err
+     * @return
+     */
+    public static OutputPipeline create(String prefix, PrintWriter out, PrintWriter err) {
+        var logDirectory = StorageManager.getInstance().getOutputLogDirectory();
+        var logFile = new File(logDirectory, "%s-%d.log.gz".formatted(prefix, System.currentTimeMillis()));
+
+        var logFiles = logDirectory.listFiles(file -> file.getName().startsWith(prefix + "-") && file.getName().endsWith(".log.gz"));
+        if (logFiles != null && logFiles.length >= MAX_LOGS_PER_PREFIX) {
+            Arrays.sort(logFiles, Comparator.comparingLong(File::lastModified));
+            for (int i = 0; i <= logFiles.length - MAX_LOGS_PER_PREFIX; i++) {
+                FileUtils.deleteQuietly(logFiles[i]);
+            }
+        }
+
+        return new OutputPipeline(logFile, Options.getInstance().getOutputTail(), out, err);
+    }
+
+    public OutputPipeline(File logFile, int tail, PrintWriter out, PrintWriter err) {
+        mLogFile = logFile;
+        mTail = Math.max(1, tail);
+        mOut = new Channel(out, "");
+        mErr = new Channel(err, "[err] ");
+
+        try {
+            FileUtils.forceMkdirParent(logFile);
+            mLogWriter = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(logFile), 64 * 1024), StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Unable to create output log " + logFile, ex);
+            mLogWriter = null;
+        }
+
+        mFlushFuture = SCHEDULER.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Flush the pending lines, print the total number of omitted lines, if
+     * any, and close the log file.
+     */
+    @Override
+    public void close() {
+        mFlushFuture.cancel(false);
+
+        synchronized (this) {
+            mOut.close();
+            mErr.close();
+
+            if (mLogWriter != null) {
+                try {
+                    mLogWriter.close();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, null, ex);
+                }
+                mLogWriter = null;
+            }
+        }
+    }
+
+    public PrintWriter getErr() {
+        return new PrintWriter(mErr, true);
+    }
+
+    public File getLogFile() {
+        return mLogFile;
+    }
+
+    public PrintWriter getOut() {
+        return new PrintWriter(mOut, true);
+    }
+
+    private synchronized void flush() {
+        mOut.drain();
+        mErr.drain();
+    }
+
+    private void log(String prefix, String line) {
+        if (mLogWriter != null) {
+            try {
+                mLogWriter.write(prefix);
+                mLogWriter.write(line);
+                mLogWriter.write('\n');
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Output log disabled", ex);
+                mLogWriter = null;
+            }
+        }
+    }
+
+    private class Channel extends Writer {
+
+        private long mDropped;
+        private final StringBuilder mLine = new StringBuilder();
+        private long mOmitted;
+        private final List<String> mPending = new ArrayList<>();
+        private final String mPrefix;
+        private final ArrayDeque<String> mRecent = new ArrayDeque<>();
+        private final PrintWriter mTarget;
+        private long mWindowLines;
+
+        Channel(PrintWriter target, String prefix) {
+            mTarget = target;
+            mPrefix = prefix;
+        }
+
+        @Override
+        public void close() {
+            synchronized (OutputPipeline.this) {
+                if (!mLine.isEmpty()) {
+                    addLine(mLine.toString());
+                    mLine.setLength(0);
+                }
+
+                drain();
+
+                if (mOmitted > 0) {
+                    mTarget.println("... %d lines omitted in total, full log in %s".formatted(mOmitted, mLogFile));
+                    mTarget.flush();
+                    mOmitted = 0;
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+            // lines are flushed at a bounded rate
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            synchronized (OutputPipeline.this) {
+                for (int i = off; i < off + len; i++) {
+                    var c = cbuf[i];
+                    if (c == '\n') {
+                        addLine(mLine.toString());
+                        mLine.setLength(0);
+                    } else if (c != '\r') {
+                        mLine.append(c);
+                    }
+                }
+            }
+        }
+
+        private void addLine(String line) {
+            log(mPrefix, line);
+
+            if (mWindowLines < mTail) {
+                mPending.add(line);
+                mWindowLines++;
+            } else {
+                mRecent.addLast(line);
+                if (mRecent.size() > mTail) {
+                    mRecent.removeFirst();
+                    mDropped++;
+                }
+            }
+        }
+
+        /**
+         * Print the head lines, then the number of lines dropped from the
+         * rolling window and the most recent lines since the last drain.
+         */
+        private void drain() {
+            if (!mPending.isEmpty()) {
+                mTarget.print(String.join("\n", mPending));
+                mTarget.println();
+                mPending.clear();
+            }
+
+            if (mDropped > 0) {
+                mTarget.println("... %d lines omitted".formatted(mDropped));
+                mOmitted += mDropped;
+                mDropped = 0;
+            }
+
+            if (!mRecent.isEmpty()) {
+                mTarget.print(String.join("\n", mRecent));
+                mTarget.println();
+                mRecent.clear();
+            }
+
+            mTarget.flush();
+        }
+    }
+}
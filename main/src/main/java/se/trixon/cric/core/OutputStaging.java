@@ -0,0 +1,112 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.StandardCopyOption;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Replaces output images without leaving a gap for their consumers.
+ * <p>
+ * jlink writes into a staging directory next to the output, on the same file
+ * system, and only a successful link is renamed into place. The image it
+ * replaces is kept as a rollback copy, {@code <output>.previous}, and
+ * everything else is handed to the {@link DeletionService}.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class OutputStaging {
+
+    private static final String PREVIOUS_SUFFIX = ".previous";
+    private static final String STAGING_SUFFIX = ".staging";
+    private final DeletionService mDeletionService = DeletionService.getInstance();
+
+    public static OutputStaging getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private OutputStaging() {
+    }
+
+    /**
+     * Move the staged image of a successful link into place, keeping the
+     * replaced image as the rollback copy. The output is restored from the
+     * rollback copy if the staged image can not be moved.
+     *
+     * @param linkJob
+     * @throws IOException
+     */
+    public synchronized void commit(LinkJob linkJob) throws IOException {
+        var output = linkJob.getOutput().toPath();
+        var previous = getPreviousDirectory(linkJob.getOutput()).toPath();
+
+        if (Files.exists(output, LinkOption.NOFOLLOW_LINKS)) {
+            if (Files.exists(previous, LinkOption.NOFOLLOW_LINKS)) {
+                mDeletionService.delete(previous.toFile());
+            }
+            Files.move(output, previous, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        try {
+            Files.move(linkJob.getStaging().toPath(), output, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            if (Files.exists(previous, LinkOption.NOFOLLOW_LINKS) && !Files.exists(output, LinkOption.NOFOLLOW_LINKS)) {
+                Files.move(previous, output, StandardCopyOption.ATOMIC_MOVE);
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Drop the staged image of a failed or canceled link, the output is left
+     * as it is.
+     *
+     * @param linkJob
+     */
+    public void discard(LinkJob linkJob) {
+        mDeletionService.delete(linkJob.getStaging());
+    }
+
+    public File getPreviousDirectory(File output) {
+        return new File(output.getPath() + PREVIOUS_SUFFIX);
+    }
+
+    public File getStagingDirectory(File output) {
+        return new File(output.getAbsoluteFile().getParentFile(), ".%s%s".formatted(output.getName(), STAGING_SUFFIX));
+    }
+
+    /**
+     * Clear what is left in the staging directory by an interrupted run and
+     * create the parent of the output, so the staged image ends up on the
+     * same file system.
+     *
+     * @param linkJob
+     * @throws IOException
+     */
+    public void prepare(LinkJob linkJob) throws IOException {
+        FileUtils.forceMkdirParent(linkJob.getOutput().getAbsoluteFile());
+        mDeletionService.delete(linkJob.getStaging());
+    }
+
+    private static class Holder {
+
+        private static final OutputStaging INSTANCE = new OutputStaging();
+    }
+}
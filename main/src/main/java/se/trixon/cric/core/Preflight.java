@@ -0,0 +1,180 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import java.io.IOException;
+import java.lang.module.Configuration;
+import java.lang.module.FindException;
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleFinder;
+import java.lang.module.ModuleReader;
+import java.lang.module.ModuleReference;
+import java.lang.module.ResolutionException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Resolves the module configuration of a link job in-process, from the
+ * cataloged module descriptors, before jlink is started.
+ * <p>
+ * All problems are collected rather than stopping at the first one, which is
+ * what {@link Configuration#resolve} would do, so it only runs as a last check
+ * once the other checks have passed. Modules shadowed by a module of the same
+ * name in an earlier directory are only warned about, as on a module path.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class Preflight {
+
+    /**
+     * @param task
+     * @param target the target, or null for a task without targets
+     * @param warnings receives the problems that do not stop the link, may be
+     * null
+     * @return the problems found, empty if the job can be linked
+     */
+    public static List<String> check(Task task, Task.Target target, List<String> warnings) {
+        var problems = new ArrayList<String>();
+        var moduleGraph = ModuleGraph.of(task, target);
+        problems.addAll(moduleGraph.getConflicts());
+
+        var roots = new TreeSet<String>();
+        for (var modulePath : task.getModulePaths()) {
+            if (modulePath.getSelectedModules() != null) {
+                roots.addAll(modulePath.getSelectedModules());
+            }
+        }
+
+        if (roots.isEmpty()) {
+            problems.add("No modules selected");
+        }
+
+        var launcherModule = task.getLauncherModule();
+        if (launcherModule != null) {
+            roots.add(launcherModule);
+        }
+
+        var missing = new TreeSet<String>();
+        var closure = moduleGraph.closure(roots, task.isBindServices(), missing);
+        for (var name : missing) {
+            problems.add("Module not found: %s%s".formatted(name, getRequiredBy(moduleGraph, closure, name)));
+        }
+
+        moduleGraph.getDuplicates().forEach((name, dirs) -> {
+            if (warnings != null && closure.contains(name)) {
+                warnings.add("Module %s in %s shadows %s".formatted(
+                        name,
+                        dirs.getFirst(),
+                        StringUtils.join(dirs.subList(1, dirs.size()), ", ")));
+            }
+        });
+
+        var packages = new TreeMap<String, String>();
+        for (var name : closure) {
+            for (var pkg : moduleGraph.getDescriptor(name).packages()) {
+                var other = packages.putIfAbsent(pkg, name);
+                if (other != null) {
+                    problems.add("Split package %s in modules %s and %s".formatted(pkg, other, name));
+                }
+            }
+        }
+
+        var javaBase = moduleGraph.getDescriptor("java.base");
+        if (javaBase != null && task.getJlink() != null) {
+            var jlinkVersion = Jdk.of(task.getJlink()).getVersion();
+            var javaBaseVersion = javaBase.version().map(ModuleDescriptor.Version::toString).orElse(null);
+            if (jlinkVersion != null && javaBaseVersion != null) {
+                try {
+                    var version = Runtime.Version.parse(javaBaseVersion);
+                    if (version.feature() != jlinkVersion.feature() || version.interim() != jlinkVersion.interim()) {
+                        problems.add("jlink version %s does not match java.base version %s in %s".formatted(
+                                jlinkVersion,
+                                version,
+                                moduleGraph.getLocation("java.base")));
+                    }
+                } catch (IllegalArgumentException ex) {
+                    // not a JDK version, leave it to jlink
+                }
+            }
+        }
+
+        if (problems.isEmpty()) {
+            try {
+                var finder = new DescriptorFinder(moduleGraph.getDescriptors());
+                if (task.isBindServices()) {
+                    Configuration.empty().resolveAndBind(finder, ModuleFinder.of(), roots);
+                } else {
+                    Configuration.empty().resolve(finder, ModuleFinder.of(), roots);
+                }
+            } catch (FindException | ResolutionException ex) {
+                problems.add(ex.getMessage());
+            }
+        }
+
+        return problems;
+    }
+
+    private static String getRequiredBy(ModuleGraph moduleGraph, Set<String> closure, String name) {
+        var requiredBy = new TreeSet<String>();
+        for (var module : closure) {
+            for (var requires : moduleGraph.getDescriptor(module).requires()) {
+                if (requires.name().equals(name) && !requires.modifiers().contains(ModuleDescriptor.Requires.Modifier.STATIC)) {
+                    requiredBy.add(module);
+                }
+            }
+        }
+
+        return requiredBy.isEmpty() ? "" : ", required by " + String.join(", ", requiredBy);
+    }
+
+    private Preflight() {
+    }
+
+    /**
+     * Module finder of descriptors only, enough for resolution but not for
+     * reading any module content.
+     */
+    private static class DescriptorFinder implements ModuleFinder {
+
+        private final Map<String, ModuleReference> mReferences = new HashMap<>();
+
+        DescriptorFinder(Map<String, ModuleDescriptor> descriptors) {
+            descriptors.forEach((name, descriptor) -> mReferences.put(name, new ModuleReference(descriptor, null) {
+                @Override
+                public ModuleReader open() throws IOException {
+                    throw new IOException("Module content is not available");
+                }
+            }));
+        }
+
+        @Override
+        public Optional<ModuleReference> find(String name) {
+            return Optional.ofNullable(mReferences.get(name));
+        }
+
+        @Override
+        public Set<ModuleReference> findAll() {
+            return Set.copyOf(mReferences.values());
+        }
+    }
+}
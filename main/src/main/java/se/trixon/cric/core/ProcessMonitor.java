@@ -0,0 +1,156 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.apache.commons.lang3.SystemUtils;
+
+/**
+ * Samples the resource usage of a process and its descendants until
+ * stopped.
+ * <p>
+ * CPU time is read through {@link ProcessHandle}, resident set size and
+ * bytes read and written (rchar and wchar, page cache hits included) from
+ * /proc on Linux. Counters of a process are cumulative, so only what a
+ * process used after its last sample before exiting is lost. The peak RSS of
+ * each process is its high water mark, so a coarse interval does not miss
+ * it.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class ProcessMonitor {
+
+    private static final long SAMPLE_INTERVAL = 200;
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "ProcessMonitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledFuture<?> mFuture;
+    private final ProcessHandle mProcessHandle;
+    private final Map<Long, Sample> mSamples = new ConcurrentHashMap<>();
+    private volatile long mTreePeakRss = -1;
+
+    /**
+     * Start sampling a process and its descendants.
+     *
+     * @param processHandle
+     * @return
+     */
+    public static ProcessMonitor start(ProcessHandle processHandle) {
+        return new ProcessMonitor(processHandle);
+    }
+
+    private ProcessMonitor(ProcessHandle processHandle) {
+        mProcessHandle = processHandle;
+        sample();
+        mFuture = SCHEDULER.scheduleWithFixedDelay(this::sample, SAMPLE_INTERVAL, SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop sampling, after a last sample.
+     *
+     * @return the usage of all sampled processes together
+     */
+    public synchronized ResourceUsage stop() {
+        mFuture.cancel(false);
+        sample();
+
+        var resourceUsage = new ResourceUsage();
+        long peakRss = mTreePeakRss;
+        for (var sample : mSamples.values()) {
+            resourceUsage.setCpuTime(add(resourceUsage.getCpuTime(), sample.mCpuTime));
+            resourceUsage.setReadBytes(add(resourceUsage.getReadBytes(), sample.mReadBytes));
+            resourceUsage.setWrittenBytes(add(resourceUsage.getWrittenBytes(), sample.mWrittenBytes));
+            peakRss = Math.max(peakRss, sample.mPeakRss);
+        }
+        resourceUsage.setPeakRss(peakRss);
+
+        return resourceUsage;
+    }
+
+    private long add(long total, long value) {
+        if (value < 0) {
+            return total;
+        }
+
+        return Math.max(total, 0) + value;
+    }
+
+    private synchronized void sample() {
+        long treeRss = -1;
+        var processHandles = Stream.concat(Stream.of(mProcessHandle), mProcessHandle.descendants()).toList();
+
+        for (var processHandle : processHandles) {
+            var sample = mSamples.computeIfAbsent(processHandle.pid(), pid -> new Sample());
+            processHandle.info().totalCpuDuration()
+                    .map(Duration::toMillis)
+                    .ifPresent(cpuTime -> sample.mCpuTime = Math.max(sample.mCpuTime, cpuTime));
+
+            if (!SystemUtils.IS_OS_LINUX) {
+                continue;
+            }
+
+            var procDirectory = Path.of("/proc", String.valueOf(processHandle.pid()));
+            try {
+                for (var line : Files.readAllLines(procDirectory.resolve("status"))) {
+                    if (line.startsWith("VmRSS:")) {
+                        treeRss = Math.max(treeRss, 0) + parseKb(line);
+                    } else if (line.startsWith("VmHWM:")) {
+                        sample.mPeakRss = Math.max(sample.mPeakRss, parseKb(line));
+                    }
+                }
+                for (var line : Files.readAllLines(procDirectory.resolve("io"))) {
+                    if (line.startsWith("rchar:")) {
+                        sample.mReadBytes = Math.max(sample.mReadBytes, parseLong(line));
+                    } else if (line.startsWith("wchar:")) {
+                        sample.mWrittenBytes = Math.max(sample.mWrittenBytes, parseLong(line));
+                    }
+                }
+            } catch (IOException | RuntimeException ex) {
+                // exited
+            }
+        }
+
+        mTreePeakRss = Math.max(mTreePeakRss, treeRss);
+    }
+
+    private long parseKb(String line) {
+        return parseLong(line) * 1024;
+    }
+
+    private long parseLong(String line) {
+        return Long.parseLong(line.substring(line.indexOf(':') + 1).replace("kB", "").trim());
+    }
+
+    private static class Sample {
+
+        private long mCpuTime = -1;
+        private long mPeakRss = -1;
+        private long mReadBytes = -1;
+        private long mWrittenBytes = -1;
+    }
+}
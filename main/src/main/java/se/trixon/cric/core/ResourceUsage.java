@@ -0,0 +1,91 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import com.google.gson.annotations.SerializedName;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Resources used by a jlink run, -1 when unknown.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class ResourceUsage {
+
+    @SerializedName("cpuTime")
+    private long mCpuTime = -1;
+    @SerializedName("peakRss")
+    private long mPeakRss = -1;
+    @SerializedName("readBytes")
+    private long mReadBytes = -1;
+    @SerializedName("writtenBytes")
+    private long mWrittenBytes = -1;
+
+    public ResourceUsage() {
+    }
+
+    /**
+     * @return the user and system CPU time in milliseconds
+     */
+    public long getCpuTime() {
+        return mCpuTime;
+    }
+
+    /**
+     * @return the peak resident set size in bytes
+     */
+    public long getPeakRss() {
+        return mPeakRss;
+    }
+
+    public long getReadBytes() {
+        return mReadBytes;
+    }
+
+    public long getWrittenBytes() {
+        return mWrittenBytes;
+    }
+
+    public void setCpuTime(long cpuTime) {
+        mCpuTime = cpuTime;
+    }
+
+    public void setPeakRss(long peakRss) {
+        mPeakRss = peakRss;
+    }
+
+    public void setReadBytes(long readBytes) {
+        mReadBytes = readBytes;
+    }
+
+    public void setWrittenBytes(long writtenBytes) {
+        mWrittenBytes = writtenBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "CPU %s, peak RSS %s, read %s, written %s".formatted(
+                mCpuTime < 0 ? "-" : "%.1f s".formatted(mCpuTime / 1000.0),
+                toSize(mPeakRss),
+                toSize(mReadBytes),
+                toSize(mWrittenBytes)
+        );
+    }
+
+    private String toSize(long bytes) {
+        return bytes < 0 ? "-" : FileUtils.byteCountToDisplaySize(bytes);
+    }
+}
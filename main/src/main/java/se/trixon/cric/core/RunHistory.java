@@ -0,0 +1,227 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Append-only store of run records, one JSON object per line.
+ * <p>
+ * Every record is written with a single append followed by a sync, holding a
+ * lock on the file so the application and the command line can share it. A
+ * line left incomplete by a crash is cut off, under the same lock, the next
+ * time the file is indexed, so only whole records are ever read. The byte
+ * offsets of the records of every task are indexed when the history is first
+ * used, and records appended by other processes are indexed as the file
+ * grows.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class RunHistory {
+
+    private static final Logger LOGGER = Logger.getLogger(RunHistory.class.getName());
+    private static final Gson GSON = new GsonBuilder().create();
+    private final File mFile;
+    private final Map<String, List<Long>> mIndex = new HashMap<>();
+    private long mIndexedLength;
+
+    public static RunHistory getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private RunHistory() {
+        mFile = StorageManager.getInstance().getHistoryFile();
+    }
+
+    public synchronized void append(RunRecord runRecord) {
+        var bytes = (GSON.toJson(runRecord) + "\n").getBytes(StandardCharsets.UTF_8);
+
+        try {
+            FileUtils.forceMkdirParent(mFile);
+            try (var channel = FileChannel.open(mFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    var lock = channel.lock()) {
+                index(channel);
+                var offset = channel.size();
+                try (var appendChannel = FileChannel.open(mFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    var buffer = ByteBuffer.wrap(bytes);
+                    while (buffer.hasRemaining()) {
+                        appendChannel.write(buffer);
+                    }
+                    appendChannel.force(false);
+                }
+
+                mIndex.computeIfAbsent(runRecord.getTaskId(), k -> new ArrayList<>()).add(offset);
+                mIndexedLength = offset + bytes.length;
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to append to the run history", ex);
+        }
+    }
+
+    /**
+     * @param taskId
+     * @return the most recent record of the task, or null
+     */
+    public synchronized RunRecord getLastRecord(String taskId) {
+        try {
+            var offsets = getIndex().getOrDefault(taskId, List.of());
+            if (!offsets.isEmpty()) {
+                try (var channel = FileChannel.open(mFile.toPath(), StandardOpenOption.READ)) {
+                    return read(channel, offsets.getLast());
+                }
+            }
+        } catch (IOException | JsonParseException ex) {
+            LOGGER.log(Level.WARNING, "Failed to read the run history", ex);
+        }
+
+        return null;
+    }
+
+    /**
+     * @param taskId
+     * @return the records of the task, oldest first
+     */
+    public synchronized List<RunRecord> getRecords(String taskId) {
+        var runRecords = new ArrayList<RunRecord>();
+
+        try {
+            var offsets = getIndex().getOrDefault(taskId, List.of());
+            if (!offsets.isEmpty()) {
+                try (var channel = FileChannel.open(mFile.toPath(), StandardOpenOption.READ)) {
+                    for (var offset : offsets) {
+                        runRecords.add(read(channel, offset));
+                    }
+                }
+            }
+        } catch (IOException | JsonParseException ex) {
+            LOGGER.log(Level.WARNING, "Failed to read the run history", ex);
+        }
+
+        return runRecords;
+    }
+
+    /**
+     * @return the offsets of the records by task, indexing the records
+     * appended since the last call
+     */
+    private Map<String, List<Long>> getIndex() throws IOException {
+        if (!mFile.isFile()) {
+            mIndex.clear();
+            mIndexedLength = 0;
+        } else if (mFile.length() != mIndexedLength) {
+            try (var channel = FileChannel.open(mFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    var lock = channel.lock()) {
+                index(channel);
+            }
+        }
+
+        return mIndex;
+    }
+
+    /**
+     * Index the records after the indexed length and cut off a trailing
+     * incomplete line. The channel must be locked, so that the line can not
+     * be the one being appended by another process.
+     */
+    private void index(FileChannel channel) throws IOException {
+        if (channel.size() < mIndexedLength) {
+            mIndex.clear();
+            mIndexedLength = 0;
+        }
+
+        var buffer = ByteBuffer.allocate(64 * 1024);
+        var line = new ByteArrayOutputStream();
+        long position = mIndexedLength;
+        long lineStart = mIndexedLength;
+
+        while (channel.read(buffer, position) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                var b = buffer.get();
+                position++;
+                if (b == '\n') {
+                    indexLine(mIndex, line.toString(StandardCharsets.UTF_8), lineStart);
+                    line.reset();
+                    lineStart = position;
+                } else {
+                    line.write(b);
+                }
+            }
+            buffer.clear();
+        }
+
+        if (lineStart < channel.size()) {
+            LOGGER.log(Level.WARNING, "Removing incomplete run history record at {0}", lineStart);
+            channel.truncate(lineStart);
+            channel.force(false);
+        }
+
+        mIndexedLength = lineStart;
+    }
+
+    private void indexLine(Map<String, List<Long>> index, String line, long offset) {
+        try {
+            var runRecord = GSON.fromJson(line, RunRecord.class);
+            if (runRecord != null && runRecord.getTaskId() != null) {
+                index.computeIfAbsent(runRecord.getTaskId(), k -> new ArrayList<>()).add(offset);
+            }
+        } catch (JsonParseException ex) {
+            LOGGER.log(Level.WARNING, "Skipping unreadable run history record at {0}", offset);
+        }
+    }
+
+    private RunRecord read(FileChannel channel, long offset) throws IOException {
+        var line = new ByteArrayOutputStream();
+        var buffer = ByteBuffer.allocate(1024);
+        var position = offset;
+
+        while (channel.read(buffer, position) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                var b = buffer.get();
+                if (b == '\n') {
+                    return GSON.fromJson(line.toString(StandardCharsets.UTF_8), RunRecord.class);
+                }
+                line.write(b);
+            }
+            position += buffer.limit();
+            buffer.clear();
+        }
+
+        return GSON.fromJson(line.toString(StandardCharsets.UTF_8), RunRecord.class);
+    }
+
+    private static class Holder {
+
+        private static final RunHistory INSTANCE = new RunHistory();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.core;
+
+import com.google.gson.annotations.SerializedName;
+import java.util.LinkedHashMap;
+
+/**
+ * The outcome of one link job of a run, as stored in the run history.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class RunRecord {
+
+    @SerializedName("exitCode")
+    private int mExitCode;
+    @SerializedName("fingerprint")
+    private String mFingerprint;
+    @SerializedName("mode")
+    private String mMode;
+    @SerializedName("moduleCount")
+    private int mModuleCount;
+    @SerializedName("outputSize")
+    private long mOutputSize;
+    @SerializedName("phases")
+    private LinkedHashMap<String, Long> mPhases = new LinkedHashMap<>();
+    @SerializedName("resources")
+    private ResourceUsage mResourceUsage;
+    @SerializedName("started")
+    private long mStarted;
+    @SerializedName("state")
+    private RunState mState;
+    @SerializedName("target")
+    private String mTarget;
+    @SerializedName("taskId")
+    private String mTaskId;
+    @SerializedName("taskName")
+    private String mTaskName;
+
+    public RunRecord() {
+    }
+
+    /**
+     * @return the sum of the phase durations in milliseconds
+     */
+    public long getDuration() {
+        return getPhases().values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    public int getExitCode() {
+        return mExitCode;
+    }
+
+    public String getFingerprint() {
+        return mFingerprint;
+    }
+
+    public String getMode() {
+        return mMode;
+    }
+
+    public int getModuleCount() {
+        return mModuleCount;
+    }
+
+    public long getOutputSize() {
+        return mOutputSize;
+    }
+
+    /**
+     * @return the durations of the phases of the run in milliseconds, in
+     * execution order
+     */
+    public LinkedHashMap<String, Long> getPhases() {
+        if (mPhases == null) {
+            mPhases = new LinkedHashMap<>();
+        }
+
+        return mPhases;
+    }
+
+    /**
+     * @return the resources used by jlink, or null
+     */
+    public ResourceUsage getResourceUsage() {
+        return mResourceUsage;
+    }
+
+    public long getStarted() {
+        return mStarted;
+    }
+
+    public RunState getState() {
+        return mState;
+    }
+
+    public String getTarget() {
+        return mTarget;
+    }
+
+    public String getTaskId() {
+        return mTaskId;
+    }
+
+    public String getTaskName() {
+        return mTaskName;
+    }
+
+    public void setExitCode(int exitCode) {
+        mExitCode = exitCode;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        mFingerprint = fingerprint;
+    }
+
+    public void setMode(String mode) {
+        mMode = mode;
+    }
+
+    public void setModuleCount(int moduleCount) {
+        mModuleCount = moduleCount;
+    }
+
+    public void setOutputSize(long outputSize) {
+        mOutputSize = outputSize;
+    }
+
+    public void setPhases(LinkedHashMap<String, Long> phases) {
+        mPhases = phases;
+    }
+
+    public void setResourceUsage(ResourceUsage resourceUsage) {
+        mResourceUsage = resourceUsage;
+    }
+
+    public void setStarted(long started) {
+        mStarted = started;
+    }
+
+    public void setState(RunState state) {
+        mState = state;
+    }
+
+    public void setTarget(String target) {
+        mTarget = target;
+    }
+
+    public void setTaskId(String taskId) {
+        mTaskId = taskId;
+    }
+
+    public void setTaskName(String taskName) {
+        mTaskName = taskName;
+    }
+}
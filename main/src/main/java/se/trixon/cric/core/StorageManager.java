@@ -17,19 +17,41 @@ package se.trixon.cric.core;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.InstanceCreator;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.annotations.SerializedName;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
-import javafx.collections.ObservableMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.apache.commons.io.FileUtils;
 import org.openide.modules.Places;
 import org.openide.util.Exceptions;
-import se.trixon.almond.util.fx.FxHelper;
 import se.trixon.almond.util.gson_adapter.FileAdapter;
 
 /**
@@ -38,6 +60,10 @@ import se.trixon.almond.util.gson_adapter.FileAdapter;
  */
 public class StorageManager {
 
+    private static final Logger LOGGER = Logger.getLogger(StorageManager.class.getName());
+    private static final long SAVE_DELAY = 500;
+    private static final long SAVE_MAX_DELAY = 2000;
+    private static final int FILE_FORMAT_VERSION = 2;
     public static final Gson GSON = new GsonBuilder()
             .setVersion(1.0)
             .serializeNulls()
@@ -45,92 +71,408 @@ public class StorageManager {
             .registerTypeAdapter(File.class, new FileAdapter())
             .create();
 
+    private final File mBackupDirectory;
+    private final File mCdsDirectory;
+    private long mDirtySince;
     private final File mHistoryFile;
+    private final File mLinkCacheDirectory;
     private final File mLogFile;
-    private Storage mStorage = new Storage();
+    private final File mManifestDirectory;
+    private final File mModuleCatalogFile;
+    private int mFileFormatVersion;
+    private final File mOutputLogDirectory;
+    private List<IndexEntry> mPendingIndex;
+    private final Map<String, JsonElement> mPendingTasks = new HashMap<>();
+    private final File mRecordingDirectory;
+    private final ScheduledExecutorService mSaveExecutorService;
+    private ScheduledFuture<?> mSaveFuture;
+    private final File mScratchDirectory;
     private final TaskManager mTaskManager = TaskManager.getInstance();
-    private final File mTasksBackupFile;
+    private final Set<String> mTaskFileIds = ConcurrentHashMap.newKeySet();
+    private final File mTasksDirectory;
     private final File mTasksFile;
+    private final File mTasksIndexFile;
+    private final File mTrashFile;
     private final File mUserDirectory;
+    private final Map<String, String> mWrittenDigests = new ConcurrentHashMap<>();
 
     public static StorageManager getInstance() {
         return Holder.INSTANCE;
     }
 
-    public static void save() {
-        try {
-            StorageManager.getInstance().saveToFile();
-        } catch (IOException ex) {
-            Exceptions.printStackTrace(ex);
-        }
+    /**
+     * Schedule a save of the changed tasks and the task index in the
+     * background, coalescing the saves requested within a short delay.
+     * <p>
+     * Only the given tasks are written, a task added, edited or restored must
+     * be passed here. A removed task only needs the index to be saved.
+     *
+     * @param tasks the tasks that have changed, may be empty
+     */
+    public static void save(Collection<Task> tasks) {
+        StorageManager.getInstance().scheduleSave(tasks);
+    }
+
+    /**
+     * @param tasks the tasks that have changed, may be empty
+     * @see #save(java.util.Collection)
+     */
+    public static void save(Task... tasks) {
+        save(List.of(tasks));
     }
 
     private StorageManager() {
         mUserDirectory = Places.getUserDirectory();
 
         mTasksFile = new File(mUserDirectory, "tasks.json");
-        mTasksBackupFile = new File(mUserDirectory, "tasks.bak");
+        mTasksDirectory = new File(mUserDirectory, "tasks");
+        mTasksIndexFile = new File(mTasksDirectory, "index.json");
+        mBackupDirectory = new File(mUserDirectory, "var/backup");
         mHistoryFile = new File(mUserDirectory, "var/history");
+        mLinkCacheDirectory = new File(mUserDirectory, "var/cache/link");
+        mCdsDirectory = new File(mUserDirectory, "var/cache/cds");
         mLogFile = new File(mUserDirectory, "var/mapollage.log");
+        mManifestDirectory = new File(mUserDirectory, "var/manifests");
+        mModuleCatalogFile = new File(mUserDirectory, "var/cache/module-catalog.json");
+        mOutputLogDirectory = new File(mUserDirectory, "var/log");
+        mRecordingDirectory = new File(mUserDirectory, "var/jfr");
+        mScratchDirectory = new File(mUserDirectory, "var/scratch");
+        mTrashFile = new File(mUserDirectory, "var/trash.json");
+
+        mSaveExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "StorageManager");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Load the full task of an index entry, in place, unless already loaded.
+     * <p>
+     * A task file that can not be read leaves the task unloaded, with a load
+     * error, and it is retried the next time. An unloaded task is never
+     * written, only its index entry.
+     *
+     * @param task
+     * @return task
+     */
+    public Task ensureLoaded(Task task) {
+        if (task.isLoaded()) {
+            return task;
+        }
+
+        synchronized (task) {
+            if (!task.isLoaded()) {
+                var gson = GSON.newBuilder()
+                        .registerTypeAdapter(Task.class, (InstanceCreator<Task>) type -> task)
+                        .create();
+
+                try (var reader = new JsonReader(Files.newBufferedReader(getTaskFile(task.getId()).toPath(), StandardCharsets.UTF_8))) {
+                    gson.fromJson(reader, Task.class);
+                    mWrittenDigests.put(task.getId(), digest(GSON.toJson(task)));
+                    task.setLoadError(null);
+                    task.setLoaded(true);
+                } catch (IOException | JsonParseException ex) {
+                    // left unloaded, so the stub is never saved over the task file
+                    LOGGER.log(Level.WARNING, "Failed to load task " + task.getId(), ex);
+                    task.setLoadError("%s: %s".formatted(getTaskFile(task.getId()), ex.getMessage()));
+                }
+            }
+        }
+
+        return task;
+    }
+
+    /**
+     * Write pending changes now and wait for them to be written.
+     */
+    public void flush() {
+        synchronized (this) {
+            if (mSaveFuture != null) {
+                mSaveFuture.cancel(false);
+            }
+        }
+
+        try {
+            mSaveExecutorService.submit(this::saveIfDirty).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Exceptions.printStackTrace(ex);
+        }
+    }
+
+    public File getBackupDirectory() {
+        return mBackupDirectory;
+    }
+
+    public File getCdsDirectory() {
+        return mCdsDirectory;
     }
 
     public int getFileFormatVersion() {
-        return mStorage.getFileFormatVersion();
+        return mFileFormatVersion;
     }
 
     public File getHistoryFile() {
         return mHistoryFile;
     }
 
+    public File getLinkCacheDirectory() {
+        return mLinkCacheDirectory;
+    }
+
     public File getLogFile() {
         return mLogFile;
     }
 
+    public File getManifestDirectory() {
+        return mManifestDirectory;
+    }
+
+    public File getModuleCatalogFile() {
+        return mModuleCatalogFile;
+    }
+
+    public File getOutputLogDirectory() {
+        return mOutputLogDirectory;
+    }
+
+    public File getRecordingDirectory() {
+        return mRecordingDirectory;
+    }
+
+    public File getScratchDirectory() {
+        return mScratchDirectory;
+    }
+
     public TaskManager getTaskManager() {
         return mTaskManager;
     }
 
+    public File getTasksDirectory() {
+        return mTasksDirectory;
+    }
+
     public File getTasksFile() {
         return mTasksFile;
     }
 
+    public File getTrashFile() {
+        return mTrashFile;
+    }
+
     public File getUserDirectory() {
         return mUserDirectory;
     }
 
+    /**
+     * Fill the task manager from the task index, with tasks loaded on
+     * demand, migrating a single file tasks.json the first time.
+     *
+     * @throws IOException
+     */
     public void load() throws IOException {
-        if (mTasksFile.exists()) {
-            mStorage = Storage.open(mTasksFile);
+        var tasks = new HashMap<String, Task>();
+
+        if (mTasksIndexFile.isFile()) {
+            readIndex(tasks);
+        } else if (mTasksFile.isFile()) {
+            tasks.putAll(Storage.open(mTasksFile).getTasks());
+            var taskTrees = new HashMap<String, JsonElement>();
+            tasks.forEach((id, task) -> taskTrees.put(id, GSON.toJsonTree(task)));
+            saveToFile(taskTrees, snapshotIndex(tasks.values()));
+            Files.move(mTasksFile.toPath(), new File(mTasksFile.getPath() + ".v1").toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        mFileFormatVersion = FILE_FORMAT_VERSION;
+        mTaskManager.setAll(tasks.values());
+    }
+
+    /**
+     * @param taskId
+     * @return the stored json of a task, or null
+     */
+    JsonElement readTaskTree(String taskId) {
+        try (var reader = new JsonReader(Files.newBufferedReader(getTaskFile(taskId).toPath(), StandardCharsets.UTF_8))) {
+            return JsonParser.parseReader(reader);
+        } catch (IOException | JsonParseException ex) {
+            return null;
+        }
+    }
 
-            var taskItems = mTaskManager.getIdToItem();
-            taskItems.clear();
-            taskItems.putAll(mStorage.getTasks());
+    /**
+     * @return the SHA-256 of the json of a task, to tell if it has changed
+     * since it was written
+     */
+    private String digest(String json) {
+        try {
+            var messageDigest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(messageDigest.digest(json.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
 
-            for (var task : taskItems.values()) {
-//                task.getSource().setTask(task);
+    private File getTaskFile(String taskId) {
+        return new File(mTasksDirectory, taskId + ".json");
+    }
+
+    private void readIndex(Map<String, Task> tasks) throws IOException {
+        try (var reader = new JsonReader(Files.newBufferedReader(mTasksIndexFile.toPath(), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "tasks" -> {
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            Task task = GSON.fromJson(reader, Task.class);
+                            task.setLoaded(false);
+                            tasks.put(task.getId(), task);
+                            mTaskFileIds.add(task.getId());
+                        }
+                        reader.endArray();
+                    }
+                    default ->
+                        reader.skipValue();
+                }
             }
-        } else {
-            mStorage = new Storage();
+            reader.endObject();
+        } catch (JsonParseException | IllegalStateException ex) {
+            throw new IOException("Invalid task index " + mTasksIndexFile, ex);
         }
     }
 
-    private void saveToFile() throws IOException {
-        mStorage.setTasks(mTaskManager.getIdToItem());
-        String json = mStorage.save(mTasksFile);
-        String tag = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
-        FileUtils.writeStringToFile(mTasksBackupFile, String.format("%s=%s\n", tag, json), Charset.defaultCharset(), true);
+    private void saveIfDirty() {
+        List<IndexEntry> index;
+        HashMap<String, JsonElement> taskTrees;
+        synchronized (this) {
+            index = mPendingIndex;
+            taskTrees = new HashMap<>(mPendingTasks);
+            mPendingIndex = null;
+            mPendingTasks.clear();
+        }
 
-        try {
-            FxHelper.runLater(() -> {
-                try {
-                    load();
-                } catch (IOException ex) {
-                    Exceptions.printStackTrace(ex);
+        if (index != null) {
+            try {
+                saveToFile(taskTrees, index);
+            } catch (IOException ex) {
+                Exceptions.printStackTrace(ex);
+            }
+        }
+    }
+
+    /**
+     * Write the changed tasks to their own files, then the index, and delete
+     * the files of removed tasks.
+     *
+     * @param taskTrees the json of the changed tasks
+     * @param index all tasks
+     */
+    private void saveToFile(Map<String, JsonElement> taskTrees, List<IndexEntry> index) throws IOException {
+        FileUtils.forceMkdir(mTasksDirectory);
+
+        var taskIds = new HashSet<String>();
+        for (var indexEntry : index) {
+            taskIds.add(indexEntry.mId);
+        }
+
+        for (var entry : taskTrees.entrySet()) {
+            var taskId = entry.getKey();
+            if (taskIds.contains(taskId)) {
+                var json = GSON.toJson(entry.getValue());
+                var digest = digest(json);
+                if (!digest.equals(mWrittenDigests.get(taskId))) {
+                    write(getTaskFile(taskId), json);
+                    mWrittenDigests.put(taskId, digest);
+                    mTaskFileIds.add(taskId);
                 }
-            });
-        } catch (IllegalStateException e) {
-            //nvm - probably started from console w/o fx
+            }
+        }
+
+        writeIndex(index);
+
+        for (var taskId : List.copyOf(mTaskFileIds)) {
+            if (!taskIds.contains(taskId)) {
+                FileUtils.deleteQuietly(getTaskFile(taskId));
+                mTaskFileIds.remove(taskId);
+                mWrittenDigests.remove(taskId);
+            }
+        }
+
+        BackupJournal.getInstance().record(taskTrees, taskIds);
+    }
+
+    /**
+     * Take a snapshot of the changed tasks and the index and (re)schedule the
+     * writer, postponing it at most {@link #SAVE_MAX_DELAY} ms from the first
+     * unsaved change.
+     * <p>
+     * The snapshot is a json tree of each changed task and the index fields
+     * of all tasks, formatting and writing the json is left to the writer.
+     * Tasks not loaded are never written.
+     */
+    private void scheduleSave(Collection<Task> tasks) {
+        var taskTrees = new HashMap<String, JsonElement>();
+        for (var task : tasks) {
+            if (task.isLoaded()) {
+                taskTrees.put(task.getId(), GSON.toJsonTree(task));
+            }
+        }
+        var index = snapshotIndex(mTaskManager.getIdToItem().values());
+
+        synchronized (this) {
+            var now = System.currentTimeMillis();
+            if (mPendingIndex == null) {
+                mDirtySince = now;
+            }
+            mPendingIndex = index;
+            mPendingTasks.putAll(taskTrees);
+
+            if (mSaveFuture != null) {
+                mSaveFuture.cancel(false);
+            }
+
+            var delay = Math.max(0, Math.min(SAVE_DELAY, mDirtySince + SAVE_MAX_DELAY - now));
+            mSaveFuture = mSaveExecutorService.schedule(this::saveIfDirty, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private List<IndexEntry> snapshotIndex(Collection<Task> tasks) {
+        var index = new ArrayList<IndexEntry>(tasks.size());
+        for (var task : tasks) {
+            index.add(new IndexEntry(task));
         }
+
+        return index;
+    }
+
+    private void write(File file, String content) throws IOException {
+        var tempFile = new File(file.getPath() + ".tmp");
+        Files.writeString(tempFile.toPath(), content, StandardCharsets.UTF_8);
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeIndex(List<IndexEntry> index) throws IOException {
+        var tempFile = new File(mTasksIndexFile.getPath() + ".tmp");
+        try (var writer = new JsonWriter(Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8))) {
+            writer.setIndent("  ");
+            writer.beginObject();
+            writer.name("fileFormatVersion").value(FILE_FORMAT_VERSION);
+            writer.name("tasks").beginArray();
+            for (var indexEntry : index) {
+                writer.beginObject();
+                writer.name("uuid").value(indexEntry.mId);
+                writer.name("name").value(indexEntry.mName);
+                writer.name("description").value(indexEntry.mDescription);
+                writer.name("last_run").value(indexEntry.mLastRun);
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+
+        Files.move(tempFile.toPath(), mTasksIndexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 
     private static class Holder {
@@ -138,24 +480,38 @@ public class StorageManager {
         private static final StorageManager INSTANCE = new StorageManager();
     }
 
-    public class Storage {
+    /**
+     * The fields of a task kept in the task index.
+     */
+    private static class IndexEntry {
+
+        private final String mDescription;
+        private final String mId;
+        private final long mLastRun;
+        private final String mName;
+
+        IndexEntry(Task task) {
+            mId = task.getId();
+            mName = task.getName();
+            mDescription = task.getDescription();
+            mLastRun = task.getLastRun();
+        }
+    }
+
+    /**
+     * The single file format of tasks.json, only read to migrate it.
+     */
+    public static class Storage {
 
-        private static final int FILE_FORMAT_VERSION = 1;
         @SerializedName("fileFormatVersion")
         private int mFileFormatVersion;
         @SerializedName("tasks")
         private final HashMap<String, Task> mTasks = new HashMap<>();
 
         public static Storage open(File file) throws IOException, JsonSyntaxException {
-            String json = FileUtils.readFileToString(file, Charset.defaultCharset());
-
-            var storage = GSON.fromJson(json, Storage.class);
-
-            if (storage.mFileFormatVersion != FILE_FORMAT_VERSION) {
-                //TODO Handle file format version change
+            try (var reader = new JsonReader(Files.newBufferedReader(file.toPath(), Charset.defaultCharset()))) {
+                return GSON.fromJson(reader, Storage.class);
             }
-
-            return storage;
         }
 
         public int getFileFormatVersion() {
@@ -163,24 +519,7 @@ public class StorageManager {
         }
 
         public HashMap<String, Task> getTasks() {
-            for (var task : mTasks.values()) {
-//                task.postLoad();
-            }
-
             return mTasks;
         }
-
-        public String save(File file) throws IOException {
-            mFileFormatVersion = FILE_FORMAT_VERSION;
-            var json = GSON.toJson(this);
-            FileUtils.writeStringToFile(file, json, Charset.defaultCharset());
-
-            return json;
-        }
-
-        void setTasks(ObservableMap<String, Task> tasks) {
-            mTasks.clear();
-            mTasks.putAll(tasks);
-        }
     }
 }
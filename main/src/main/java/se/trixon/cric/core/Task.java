@@ -18,6 +18,7 @@ package se.trixon.cric.core;
 import com.google.gson.annotations.SerializedName;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.ResourceBundle;
 import java.util.TreeSet;
 import java.util.UUID;
@@ -49,8 +50,12 @@ public class Task implements EditableListItem {
     private boolean mIgnoreSigning;
     @SerializedName("jlink")
     private File mJlink;
+    @SerializedName("jvmProfile")
+    private JvmProfile mJvmProfile;
     @SerializedName("last_run")
     private long mLastRun;
+    private transient volatile String mLoadError;
+    private transient volatile boolean mLoaded = true;
     @SerializedName("launcher")
     private String mLauncher;
     @SerializedName("modulePaths")
@@ -64,17 +69,35 @@ public class Task implements EditableListItem {
     private transient final Options mOptions = Options.getInstance();
     @SerializedName("output")
     private File mOutput;
+    @SerializedName("sizeBudget")
+    private long mSizeBudget;
     @SerializedName("stripDebug")
     private boolean mStripDebug;
+    @SerializedName("targets")
+    private ArrayList<Target> mTargets;
     private transient StringBuilder mValidationErrorBuilder = new StringBuilder();
 
     public Task() {
     }
 
     public ArrayList<String> getCommand() {
+        return getCommand(null);
+    }
+
+    /**
+     * Create the jlink command for one of the targets of the task.
+     *
+     * @param target the target, or null for a task without targets
+     * @return
+     */
+    public ArrayList<String> getCommand(Target target) {
         var command = new ArrayList<String>();
         command.add(getJlinkString());
 
+        for (var jvmOption : getJvmProfileOrDefault().getJvmOptions(mJlink)) {
+            command.add("-J" + jvmOption);
+        }
+
         if (mOptions.isJlinkDebug()) {
             command.add("-J-Djlink.debug=true");
         }
@@ -112,7 +135,10 @@ public class Task implements EditableListItem {
 
         var paths = new ArrayList<String>();
         var modules = new ArrayList<String>();
-        for (var modulePath : mModulePaths) {
+        if (target != null) {
+            paths.add(target.getJmods().getPath());
+        }
+        for (var modulePath : getModulePaths()) {
             paths.add(modulePath.mDirectory.getPath());
             modules.addAll(modulePath.getSelectedModules());
         }
@@ -129,7 +155,7 @@ public class Task implements EditableListItem {
         }
 
         command.add("--output");
-        command.add(mOutput.getPath());
+        command.add(getOutput(target).getPath());
 
         //command.add("--save-opts");
         //command.add("%s/saved-opts".formatted(mOutput.getPath()));
@@ -168,6 +194,17 @@ public class Task implements EditableListItem {
         return getJlink().getPath();
     }
 
+    /**
+     * @return the JVM profile of the task, or null to use the global one
+     */
+    public JvmProfile getJvmProfile() {
+        return mJvmProfile;
+    }
+
+    public JvmProfile getJvmProfileOrDefault() {
+        return mJvmProfile != null ? mJvmProfile : mOptions.getJvmProfile();
+    }
+
     public long getLastRun() {
         return mLastRun;
     }
@@ -176,6 +213,26 @@ public class Task implements EditableListItem {
         return mLauncher;
     }
 
+    /**
+     * @return the module of the main class of the launcher, or null
+     */
+    public String getLauncherModule() {
+        if (StringUtils.isBlank(mLauncher) || !mLauncher.contains("=")) {
+            return null;
+        }
+
+        var module = StringUtils.substringBefore(StringUtils.substringAfter(mLauncher, "="), "/").trim();
+
+        return module.isEmpty() ? null : module;
+    }
+
+    /**
+     * @return why the task file could not be read, or null
+     */
+    public String getLoadError() {
+        return mLoadError;
+    }
+
     public ArrayList<ModulePath> getModulePaths() {
         if (mModulePaths == null) {
             mModulePaths = new ArrayList<>();
@@ -193,10 +250,33 @@ public class Task implements EditableListItem {
         return mOutput;
     }
 
+    public File getOutput(Target target) {
+        if (target == null) {
+            return mOutput;
+        } else {
+            return new File(mOutput.getPath() + StringUtils.defaultString(target.getOutputSuffix()));
+        }
+    }
+
     public String getOutputAsString() {
         return mOutput == null ? "" : mOutput.getPath();
     }
 
+    /**
+     * @return the maximum size of an image in MB, 0 for no limit
+     */
+    public long getSizeBudget() {
+        return mSizeBudget;
+    }
+
+    public ArrayList<Target> getTargets() {
+        if (mTargets == null) {
+            mTargets = new ArrayList<>();
+        }
+
+        return mTargets;
+    }
+
     public String getValidationError() {
         return mValidationErrorBuilder.toString();
     }
@@ -209,6 +289,14 @@ public class Task implements EditableListItem {
         return mIgnoreSigning;
     }
 
+    /**
+     * @return false for a task only read from the task index
+     * @see StorageManager#ensureLoaded(Task)
+     */
+    public boolean isLoaded() {
+        return mLoaded;
+    }
+
     public boolean isNoHeaders() {
         return mNoHeaders;
     }
@@ -224,6 +312,10 @@ public class Task implements EditableListItem {
     public boolean isValid() {
         mValidationErrorBuilder = new StringBuilder();
 
+        if (mLoadError != null) {
+            addValidationError("Failed to load the task: " + mLoadError);
+        }
+
         if (!new File(getJlinkString()).isFile()) {
             addValidationError("Invalid jlink");
         }
@@ -232,12 +324,23 @@ public class Task implements EditableListItem {
             addValidationError("Invalid output directory");
         }
 
-        for (var modulePath : mModulePaths) {
+        for (var modulePath : getModulePaths()) {
             if (!modulePath.mDirectory.isDirectory()) {
                 addValidationError("Invalid module directory: " + modulePath.mDirectory.getPath());
             }
         }
 
+        var suffixes = new HashSet<String>();
+        for (var target : getTargets()) {
+            if (target.mJmods == null || !target.mJmods.isDirectory()) {
+                addValidationError("Invalid jmods directory for target: " + target.mName);
+            }
+
+            if (!suffixes.add(StringUtils.defaultString(target.mOutputSuffix))) {
+                addValidationError("Duplicate output suffix for target: " + target.mName);
+            }
+        }
+
         return mValidationErrorBuilder.length() == 0;
     }
 
@@ -269,6 +372,10 @@ public class Task implements EditableListItem {
         mJlink = jlink;
     }
 
+    public void setJvmProfile(JvmProfile jvmProfile) {
+        mJvmProfile = jvmProfile;
+    }
+
     public void setLastRun(long lastRun) {
         mLastRun = lastRun;
     }
@@ -277,6 +384,14 @@ public class Task implements EditableListItem {
         mLauncher = launcher;
     }
 
+    void setLoaded(boolean loaded) {
+        mLoaded = loaded;
+    }
+
+    public void setLoadError(String loadError) {
+        mLoadError = loadError;
+    }
+
     public void setModulePaths(ArrayList<ModulePath> modulePaths) {
         mModulePaths = modulePaths;
     }
@@ -297,10 +412,18 @@ public class Task implements EditableListItem {
         mOutput = dest;
     }
 
+    public void setSizeBudget(long sizeBudget) {
+        mSizeBudget = sizeBudget;
+    }
+
     public void setStripDebug(boolean stripDebug) {
         mStripDebug = stripDebug;
     }
 
+    public void setTargets(ArrayList<Target> targets) {
+        mTargets = targets;
+    }
+
     @Override
     public String toString() {
         return mName;
@@ -337,4 +460,52 @@ public class Task implements EditableListItem {
         }
 
     }
+
+    public static class Target {
+
+        @SerializedName("jmods")
+        private File mJmods;
+        @SerializedName("name")
+        private String mName;
+        @SerializedName("outputSuffix")
+        private String mOutputSuffix;
+
+        public Target() {
+        }
+
+        public Target(String name, File jmods, String outputSuffix) {
+            mName = name;
+            mJmods = jmods;
+            mOutputSuffix = outputSuffix;
+        }
+
+        public File getJmods() {
+            return mJmods;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public String getOutputSuffix() {
+            return mOutputSuffix;
+        }
+
+        public void setJmods(File jmods) {
+            mJmods = jmods;
+        }
+
+        public void setName(String name) {
+            mName = name;
+        }
+
+        public void setOutputSuffix(String outputSuffix) {
+            mOutputSuffix = outputSuffix;
+        }
+
+        @Override
+        public String toString() {
+            return mName;
+        }
+    }
 }
@@ -16,7 +16,13 @@
 package se.trixon.cric.core;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
@@ -26,13 +32,21 @@ import javafx.collections.ObservableMap;
 import org.apache.commons.lang3.StringUtils;
 
 /**
+ * Keeps the tasks by id, and the items sorted case-insensitively by name.
+ * <p>
+ * The items and the name index are updated incrementally on every change of
+ * the id map, with a binary search, use {@link #setAll(Collection)} for mass
+ * changes.
  *
  * @author Patrik Karlström <patrik@trixon.se>
  */
 public class TaskManager {
 
+    private boolean mBulkChange;
     private final ObjectProperty<ObservableMap<String, Task>> mIdToItemProperty = new SimpleObjectProperty<>();
+    private final Map<String, String> mIdToName = new HashMap<>();
     private final ObjectProperty<ObservableList<Task>> mItemsProperty = new SimpleObjectProperty<>();
+    private final TreeMap<String, Task> mNameToItem = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
 
     public static TaskManager getInstance() {
         return Holder.INSTANCE;
@@ -43,35 +57,45 @@ public class TaskManager {
         mIdToItemProperty.setValue(FXCollections.observableHashMap());
 
         mIdToItemProperty.get().addListener((MapChangeListener.Change<? extends String, ? extends Task> change) -> {
-            var values = new ArrayList<>(getIdToItem().values());
-            values.sort((o1, o2) -> o1.getName().compareToIgnoreCase(o2.getName()));
-            getItems().setAll(values);
+            if (mBulkChange) {
+                return;
+            }
+
+            if (change.wasRemoved()) {
+                removeItem(change.getKey());
+            }
+
+            if (change.wasAdded()) {
+                addItem(change.getValueAdded());
+            }
         });
     }
 
+    /**
+     * Remove all tasks.
+     */
+    public void clear() {
+        setAll(List.of());
+    }
+
     public boolean exists(Task item) {
-        return getIdToItem().containsValue(item);
+        return getIdToItem().get(item.getId()) == item;
     }
 
     public boolean exists(String name) {
-        return getItems().stream()
-                .anyMatch(item -> (StringUtils.equalsIgnoreCase(name, item.getName())));
+        return name != null && mNameToItem.containsKey(name);
     }
 
     public Task getById(String id) {
         return getIdToItem().get(id);
     }
 
+    /**
+     * @param name
+     * @return the task with the name, ignoring case, or null
+     */
     public Task getByName(String name) {
-        for (var task : getItems()) {
-            if (task.getName().equalsIgnoreCase(name)) {
-                return task;
-            }
-        }
-
-        System.out.println("TASK NOT FOUND: " + name);
-
-        return null;
+        return name == null ? null : mNameToItem.get(name);
     }
 
     public final ObservableMap<String, Task> getIdToItem() {
@@ -113,6 +137,125 @@ public class TaskManager {
         return mItemsProperty;
     }
 
+    /**
+     * Move a task, edited in place, to the position of its current name.
+     *
+     * @param task
+     */
+    public void reindex(Task task) {
+        var name = mIdToName.get(task.getId());
+        if (name != null && !name.equals(getName(task))) {
+            removeItem(task.getId());
+            addItem(task);
+        }
+    }
+
+    /**
+     * Replace all tasks, sorting them once instead of once per task.
+     *
+     * @param tasks
+     */
+    public void setAll(Collection<Task> tasks) {
+        var idToItem = getIdToItem();
+        mBulkChange = true;
+        try {
+            idToItem.clear();
+            for (var task : tasks) {
+                idToItem.put(task.getId(), task);
+            }
+        } finally {
+            mBulkChange = false;
+        }
+
+        mIdToName.clear();
+        mNameToItem.clear();
+        var items = new ArrayList<Task>(idToItem.size());
+        for (var task : idToItem.values()) {
+            mIdToName.put(task.getId(), getName(task));
+            items.add(task);
+        }
+        items.sort(Comparator.comparing((Task task) -> mIdToName.get(task.getId()), String.CASE_INSENSITIVE_ORDER).thenComparing(Task::getId));
+        for (var task : items.reversed()) {
+            mNameToItem.put(mIdToName.get(task.getId()), task);
+        }
+
+        getItems().setAll(items);
+    }
+
+    private void addItem(Task task) {
+        var name = getName(task);
+        var index = indexOf(name, task.getId());
+        if (index >= 0) {
+            return;
+        }
+
+        mIdToName.put(task.getId(), name);
+        getItems().add(-index - 1, task);
+
+        var first = mNameToItem.get(name);
+        if (first == null || task.getId().compareTo(first.getId()) < 0) {
+            mNameToItem.put(name, task);
+        }
+    }
+
+    private int compare(String name1, String id1, String name2, String id2) {
+        var result = String.CASE_INSENSITIVE_ORDER.compare(name1, name2);
+
+        return result != 0 ? result : id1.compareTo(id2);
+    }
+
+    private String getName(Task task) {
+        return Objects.toString(task.getName(), "");
+    }
+
+    /**
+     * Binary search the items by the names they were indexed with.
+     *
+     * @return the index, or (-(insertion point) - 1)
+     */
+    private int indexOf(String name, String id) {
+        var items = getItems();
+        int low = 0;
+        int high = items.size() - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            var midId = items.get(mid).getId();
+            int result = compare(mIdToName.get(midId), midId, name, id);
+            if (result < 0) {
+                low = mid + 1;
+            } else if (result > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    private void removeItem(String id) {
+        var name = mIdToName.get(id);
+        if (name == null) {
+            return;
+        }
+
+        var index = indexOf(name, id);
+        var task = getItems().remove(index);
+        mIdToName.remove(id);
+
+        if (mNameToItem.get(name) == task) {
+            mNameToItem.remove(name);
+            var next = -indexOf(name, "") - 1;
+            if (next < getItems().size()) {
+                var nextTask = getItems().get(next);
+                if (String.CASE_INSENSITIVE_ORDER.compare(name, mIdToName.get(nextTask.getId())) == 0) {
+                    mNameToItem.put(mIdToName.get(nextTask.getId()), nextTask);
+                }
+            }
+        }
+    }
+
     private static class Holder {
 
         private static final TaskManager INSTANCE = new TaskManager();
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.ui;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.geometry.Orientation;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Label;
+import javafx.scene.control.SplitPane;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import org.apache.commons.io.FileUtils;
+import se.trixon.almond.util.Dict;
+import se.trixon.almond.util.fx.FxHelper;
+import se.trixon.cric.core.RunHistory;
+import se.trixon.cric.core.RunRecord;
+import se.trixon.cric.core.RunState;
+import se.trixon.cric.core.Task;
+
+/**
+ * Run history of a task with duration and image size trends per target.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class HistoryPane extends BorderPane {
+
+    private static final int TREND_RUNS = 10;
+    private final LineChart<Number, Number> mDurationChart = createChart("duration (s)");
+    private final SimpleDateFormat mSimpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private final LineChart<Number, Number> mSizeChart = createChart("size (MB)");
+    private final TableView<RunRecord> mTableView = new TableView<>();
+    private final Label mTrendLabel = new Label();
+
+    public HistoryPane(Task task) {
+        createUI();
+        load(RunHistory.getInstance().getRecords(task.getId()));
+    }
+
+    private LineChart<Number, Number> createChart(String title) {
+        var xAxis = new NumberAxis();
+        xAxis.setLabel("run");
+        xAxis.setForceZeroInRange(false);
+        var yAxis = new NumberAxis();
+        yAxis.setLabel(title);
+
+        var chart = new LineChart<Number, Number>(xAxis, yAxis);
+        chart.setAnimated(false);
+        chart.setCreateSymbols(true);
+        HBox.setHgrow(chart, Priority.ALWAYS);
+
+        return chart;
+    }
+
+    private void createUI() {
+        var startedColumn = new TableColumn<RunRecord, String>("started");
+        startedColumn.setCellValueFactory(p -> new SimpleStringProperty(mSimpleDateFormat.format(new Date(p.getValue().getStarted()))));
+
+        var targetColumn = new TableColumn<RunRecord, String>("target");
+        targetColumn.setCellValueFactory(p -> new SimpleStringProperty(Objects.toString(p.getValue().getTarget(), "")));
+
+        var stateColumn = new TableColumn<RunRecord, RunState>("state");
+        stateColumn.setCellValueFactory(p -> new SimpleObjectProperty<>(p.getValue().getState()));
+
+        var modeColumn = new TableColumn<RunRecord, String>("mode");
+        modeColumn.setCellValueFactory(p -> new SimpleStringProperty(Objects.toString(p.getValue().getMode(), "")));
+
+        var durationColumn = new TableColumn<RunRecord, String>("duration");
+        durationColumn.setCellValueFactory(p -> new SimpleStringProperty("%.1f s".formatted(p.getValue().getDuration() / 1000.0)));
+
+        var sizeColumn = new TableColumn<RunRecord, String>("size");
+        sizeColumn.setCellValueFactory(p -> new SimpleStringProperty(FileUtils.byteCountToDisplaySize(p.getValue().getOutputSize())));
+
+        var cpuColumn = new TableColumn<RunRecord, String>("cpu");
+        cpuColumn.setCellValueFactory(p -> {
+            var resourceUsage = p.getValue().getResourceUsage();
+            var cpuTime = resourceUsage == null ? -1 : resourceUsage.getCpuTime();
+            return new SimpleStringProperty(cpuTime < 0 ? "" : "%.1f s".formatted(cpuTime / 1000.0));
+        });
+
+        var rssColumn = new TableColumn<RunRecord, String>("peak rss");
+        rssColumn.setCellValueFactory(p -> {
+            var resourceUsage = p.getValue().getResourceUsage();
+            var peakRss = resourceUsage == null ? -1 : resourceUsage.getPeakRss();
+            return new SimpleStringProperty(peakRss < 0 ? "" : FileUtils.byteCountToDisplaySize(peakRss));
+        });
+
+        var modulesColumn = new TableColumn<RunRecord, Number>("modules");
+        modulesColumn.setCellValueFactory(p -> new SimpleObjectProperty<>(p.getValue().getModuleCount()));
+
+        var phasesColumn = new TableColumn<RunRecord, String>("phases (ms)");
+        phasesColumn.setCellValueFactory(p -> new SimpleStringProperty(p.getValue().getPhases().toString()));
+
+        mTableView.getColumns().setAll(startedColumn, targetColumn, stateColumn, modeColumn, durationColumn, cpuColumn, rssColumn, sizeColumn, modulesColumn, phasesColumn);
+        mTableView.setPlaceholder(new Label("The task has not been run yet"));
+
+        var chartBox = new HBox(mDurationChart, mSizeChart);
+        var splitPane = new SplitPane(chartBox, mTableView);
+        splitPane.setOrientation(Orientation.VERTICAL);
+
+        FxHelper.setPadding(FxHelper.getUIScaledInsets(0, 0, 8, 0), mTrendLabel);
+        setTop(mTrendLabel);
+        setCenter(splitPane);
+    }
+
+    private void load(List<RunRecord> runRecords) {
+        var durationSeries = new ArrayList<XYChart.Series<Number, Number>>();
+        var sizeSeries = new ArrayList<XYChart.Series<Number, Number>>();
+        var targets = runRecords.stream().map(r -> Objects.toString(r.getTarget(), "")).distinct().toList();
+
+        for (var target : targets) {
+            var name = target.isEmpty() ? Dict.TASK.toString() : target;
+            var durations = new XYChart.Series<Number, Number>();
+            durations.setName(name);
+            var sizes = new XYChart.Series<Number, Number>();
+            sizes.setName(name);
+
+            int run = 0;
+            for (var runRecord : runRecords) {
+                if (Objects.toString(runRecord.getTarget(), "").equals(target)) {
+                    run++;
+                    if (runRecord.getState() == RunState.DONE) {
+                        durations.getData().add(new XYChart.Data<>(run, runRecord.getDuration() / 1000.0));
+                        sizes.getData().add(new XYChart.Data<>(run, runRecord.getOutputSize() / (double) FileUtils.ONE_MB));
+                    }
+                }
+            }
+
+            durationSeries.add(durations);
+            sizeSeries.add(sizes);
+        }
+
+        mDurationChart.getData().setAll(durationSeries);
+        mSizeChart.getData().setAll(sizeSeries);
+        mTableView.getItems().setAll(runRecords.reversed());
+        mTrendLabel.setText(getTrend(runRecords));
+    }
+
+    /**
+     * Compare the last successful run with the median of the previous ones.
+     */
+    private String getTrend(List<RunRecord> runRecords) {
+        var done = runRecords.stream().filter(r -> r.getState() == RunState.DONE && !"cache".equals(r.getMode())).toList();
+        if (done.size() < 2) {
+            return "%d runs".formatted(runRecords.size());
+        }
+
+        var last = done.getLast();
+        var previous = done.subList(Math.max(0, done.size() - 1 - TREND_RUNS), done.size() - 1);
+        var medianDuration = median(previous.stream().mapToLong(RunRecord::getDuration).toArray());
+        var medianSize = median(previous.stream().mapToLong(RunRecord::getOutputSize).toArray());
+
+        return "%d runs, last link %+.0f%% duration and %+.0f%% size compared to the median of the previous %d".formatted(
+                runRecords.size(),
+                percent(last.getDuration(), medianDuration),
+                percent(last.getOutputSize(), medianSize),
+                previous.size());
+    }
+
+    private double median(long[] values) {
+        Arrays.sort(values);
+        int middle = values.length / 2;
+
+        return values.length % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2.0;
+    }
+
+    private double percent(long value, double reference) {
+        return reference == 0 ? 0 : (value - reference) * 100 / reference;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.ui;
+
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TextField;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.VBox;
+import se.trixon.almond.util.fx.FxHelper;
+import se.trixon.cric.core.JvmProfile;
+import se.trixon.cric.core.Options;
+import se.trixon.cric.core.Task;
+
+/**
+ * Editor of the JVM options of the jlink process, of the task or the global
+ * default.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class JvmTab extends Tab {
+
+    private static final String DEFAULT = "default";
+    private final Spinner<Integer> mActiveProcessorCountSpinner = new Spinner<>(0, Runtime.getRuntime().availableProcessors() * 4, 0);
+    private final CheckBox mCdsCheckBox = new CheckBox("CDS archive");
+    private final ComboBox<String> mGcComboBox = new ComboBox<>();
+    private final GridPane mGridPane = new GridPane();
+    private final TextField mMaxHeapTextField = new TextField();
+    private final Options mOptions = Options.getInstance();
+    private final CheckBox mTaskProfileCheckBox = new CheckBox("task profile");
+    private final ComboBox<String> mTieredStopAtLevelComboBox = new ComboBox<>();
+
+    public JvmTab() {
+        setClosable(false);
+        setText("jvm");
+        createUI();
+        setContent(mGridPane);
+    }
+
+    /**
+     * @return the profile of the task, or null to use the global one
+     */
+    JvmProfile getJvmProfile() {
+        return mTaskProfileCheckBox.isSelected() ? createProfile() : null;
+    }
+
+    void load(Task task) {
+        var jvmProfile = task.getJvmProfile();
+        mTaskProfileCheckBox.setSelected(jvmProfile != null);
+        load(jvmProfile != null ? jvmProfile : mOptions.getJvmProfile());
+    }
+
+    private JvmProfile createProfile() {
+        var jvmProfile = new JvmProfile();
+        jvmProfile.setMaxHeap(mMaxHeapTextField.getText().trim());
+        jvmProfile.setGc(mGcComboBox.getValue().equals(DEFAULT) ? "" : mGcComboBox.getValue());
+        var tieredStopAtLevel = mTieredStopAtLevelComboBox.getValue();
+        jvmProfile.setTieredStopAtLevel(tieredStopAtLevel.equals(DEFAULT) ? -1 : Integer.parseInt(tieredStopAtLevel));
+        jvmProfile.setActiveProcessorCount(mActiveProcessorCountSpinner.getValue());
+        jvmProfile.setCds(mCdsCheckBox.isSelected());
+
+        return jvmProfile;
+    }
+
+    private void createUI() {
+        mGcComboBox.getItems().add(DEFAULT);
+        for (var gc : JvmProfile.GCS) {
+            if (!gc.isEmpty()) {
+                mGcComboBox.getItems().add(gc);
+            }
+        }
+        mTieredStopAtLevelComboBox.getItems().setAll(DEFAULT, "0", "1", "2", "3", "4");
+
+        mTaskProfileCheckBox.setTooltip(new Tooltip("Use these options for this task instead of the global default"));
+        mMaxHeapTextField.setPromptText(DEFAULT);
+        mMaxHeapTextField.setTooltip(new Tooltip("Maximum heap size of jlink, e.g. 512m or 4g (-Xmx)"));
+        mGcComboBox.setTooltip(new Tooltip("Garbage collector of jlink"));
+        mTieredStopAtLevelComboBox.setTooltip(new Tooltip("Highest JIT tier of jlink, 1 starts faster on short links (-XX:TieredStopAtLevel)"));
+        mActiveProcessorCountSpinner.setTooltip(new Tooltip("Number of CPUs jlink sees, 0 for all (-XX:ActiveProcessorCount)"));
+        mCdsCheckBox.setTooltip(new Tooltip("Start jlink from a generated CDS archive of its own classes (-XX:SharedArchiveFile)"));
+        mActiveProcessorCountSpinner.setEditable(true);
+
+        var defaultButton = new Button("set as default");
+        defaultButton.setTooltip(new Tooltip("Use these options for all tasks without a task profile"));
+        defaultButton.setOnAction(actionEvent -> mOptions.setJvmProfile(createProfile()));
+
+        mTaskProfileCheckBox.selectedProperty().addListener((observable, oldValue, newValue) -> {
+            if (!newValue) {
+                load(mOptions.getJvmProfile());
+            }
+        });
+
+        int row = 0;
+        mGridPane.add(mTaskProfileCheckBox, 0, row++, GridPane.REMAINING, 1);
+        mGridPane.addRow(row++,
+                new VBox(new Label("max heap"), mMaxHeapTextField),
+                new VBox(new Label("gc"), mGcComboBox),
+                new VBox(new Label("tiered stop at level"), mTieredStopAtLevelComboBox),
+                new VBox(new Label("active processors"), mActiveProcessorCountSpinner)
+        );
+        mGridPane.add(mCdsCheckBox, 0, row++, GridPane.REMAINING, 1);
+        mGridPane.add(defaultButton, 0, row++, GridPane.REMAINING, 1);
+
+        mGridPane.setHgap(FxHelper.getUIScaled(16));
+        mGridPane.setVgap(FxHelper.getUIScaled(16));
+        FxHelper.setPadding(FxHelper.getUIScaledInsets(16), mGridPane);
+    }
+
+    private void load(JvmProfile jvmProfile) {
+        mMaxHeapTextField.setText(jvmProfile.getMaxHeap());
+        mGcComboBox.setValue(jvmProfile.getGc().isEmpty() ? DEFAULT : jvmProfile.getGc());
+        mTieredStopAtLevelComboBox.setValue(jvmProfile.getTieredStopAtLevel() < 0 ? DEFAULT : String.valueOf(jvmProfile.getTieredStopAtLevel()));
+        mActiveProcessorCountSpinner.getValueFactory().setValue(jvmProfile.getActiveProcessorCount());
+        mCdsCheckBox.setSelected(jvmProfile.isCds());
+    }
+}
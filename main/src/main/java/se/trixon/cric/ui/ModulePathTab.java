@@ -17,14 +17,14 @@ package se.trixon.cric.ui;
 
 import java.io.File;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import javafx.application.Platform;
 import javafx.scene.control.Label;
 import javafx.scene.control.Tab;
 import javafx.scene.layout.BorderPane;
 import javax.swing.JFileChooser;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.controlsfx.control.ListSelectionView;
 import se.trixon.almond.nbp.Almond;
@@ -32,6 +32,7 @@ import se.trixon.almond.util.Dict;
 import se.trixon.almond.util.fx.FxHelper;
 import se.trixon.almond.util.fx.control.FileChooserPane;
 import se.trixon.almond.util.fx.control.FileChooserPaneSwingFx;
+import se.trixon.cric.core.ModuleCatalog;
 import se.trixon.cric.core.Task.ModulePath;
 
 /**
@@ -41,8 +42,11 @@ import se.trixon.cric.core.Task.ModulePath;
 public class ModulePathTab extends Tab {
 
     private final BorderPane mBorderPane = new BorderPane();
+    private final Consumer<File> mCatalogListener;
+    private File mDirectory;
     private final FileChooserPaneSwingFx mFileChooserPane;
     private final ListSelectionView<String> mListSelectionView;
+    private final ModuleCatalog mModuleCatalog = ModuleCatalog.getInstance();
 
     public ModulePathTab(int tabCounter, ModulePath modulePath) {
         mFileChooserPane = new FileChooserPaneSwingFx(Dict.PATH.toString(), Dict.PATH.toString(), Almond.getFrame(), JFileChooser.DIRECTORIES_ONLY);
@@ -58,6 +62,13 @@ public class ModulePathTab extends Tab {
         setContent(mBorderPane);
         setText("module-path #" + tabCounter);
 
+        mCatalogListener = dir -> {
+            if (dir.equals(mDirectory)) {
+                var names = mModuleCatalog.getModuleNames(dir);
+                Platform.runLater(() -> setAvailableModules(dir, names));
+            }
+        };
+
         if (modulePath != null) {
             load(modulePath);
         }
@@ -73,6 +84,24 @@ public class ModulePathTab extends Tab {
         return modulePath;
     }
 
+    /**
+     * Select the available modules in modules and move the selected modules
+     * not in modules back to the available ones.
+     *
+     * @param modules
+     */
+    void setSelected(Set<String> modules) {
+        var all = new TreeSet<>(mListSelectionView.getSourceItems());
+        all.addAll(mListSelectionView.getTargetItems());
+
+        var selected = new TreeSet<>(all);
+        selected.retainAll(modules);
+        all.removeAll(selected);
+
+        mListSelectionView.getTargetItems().setAll(selected);
+        mListSelectionView.getSourceItems().setAll(all);
+    }
+
     void select(String modules) {
         for (var module : StringUtils.split(modules)) {
             if (mListSelectionView.getSourceItems().contains(module)) {
@@ -83,11 +112,20 @@ public class ModulePathTab extends Tab {
     }
 
     private void initListeners() {
+        tabPaneProperty().addListener((p, o, n) -> {
+            if (n == null) {
+                mModuleCatalog.removeListener(mCatalogListener);
+            } else {
+                mModuleCatalog.addListener(mCatalogListener);
+            }
+        });
+
         mFileChooserPane.getTextField().textProperty().addListener((observable, oldValue, newValue) -> {
             var file = new File(newValue);
             if (file.isDirectory()) {
                 rescanModuleDirectory(file);
             } else {
+                mDirectory = null;
                 mListSelectionView.getSourceItems().clear();
             }
         });
@@ -134,15 +172,29 @@ public class ModulePathTab extends Tab {
         mListSelectionView.getTargetItems().setAll(modulePath.getSelectedModules());
     }
 
+    /**
+     * Show the cataloged modules of dir at once and update them when the
+     * catalog has been refreshed in the background.
+     */
     private void rescanModuleDirectory(File dir) {
-        mListSelectionView.getSourceItems().clear();
-
-        try {
-            mListSelectionView.getSourceItems().setAll(FileUtils.listFiles(dir, new String[]{"jmod"}, false).stream()
-                    .map(f -> FilenameUtils.getBaseName(f.getName()))
-                    .filter(s -> !mListSelectionView.getTargetItems().contains(s))
-                    .collect(Collectors.toCollection(TreeSet::new)));
-        } catch (Exception e) {
+        mDirectory = dir;
+        if (dir == null) {
+            mListSelectionView.getSourceItems().clear();
+            return;
+        }
+
+        setAvailableModules(dir, mModuleCatalog.getModuleNames(dir));
+        mModuleCatalog.refresh(dir).thenAccept(entries -> {
+            var names = mModuleCatalog.getModuleNames(dir);
+            Platform.runLater(() -> setAvailableModules(dir, names));
+        });
+    }
+
+    private void setAvailableModules(File dir, Set<String> names) {
+        if (dir.equals(mDirectory)) {
+            var available = new TreeSet<>(names);
+            available.removeAll(mListSelectionView.getTargetItems());
+            mListSelectionView.getSourceItems().setAll(available);
         }
     }
 }
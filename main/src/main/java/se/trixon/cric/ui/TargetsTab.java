@@ -0,0 +1,119 @@
+/*
+ * Copyright 2026 Patrik Karlström <patrik@trixon.se>.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.trixon.cric.ui;
+
+import java.io.File;
+import java.util.ArrayList;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.cell.TextFieldTableCell;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import org.apache.commons.lang3.StringUtils;
+import se.trixon.almond.util.Dict;
+import se.trixon.almond.util.fx.FxHelper;
+import se.trixon.cric.core.Task;
+import se.trixon.cric.core.Task.Target;
+
+/**
+ * Editor of the target platforms of a task, each one linked against its own
+ * jmods directory into the task output with a suffix.
+ *
+ * @author Patrik Karlström <patrik@trixon.se>
+ */
+public class TargetsTab extends Tab {
+
+    private final BorderPane mBorderPane = new BorderPane();
+    private final TableView<Target> mTableView = new TableView<>();
+
+    public TargetsTab() {
+        setClosable(false);
+        setText("targets");
+        createUI();
+        setContent(mBorderPane);
+    }
+
+    ArrayList<Target> getTargets() {
+        var targets = new ArrayList<Target>();
+        for (var target : mTableView.getItems()) {
+            if (StringUtils.isNotBlank(target.getName())) {
+                targets.add(target);
+            }
+        }
+
+        return targets;
+    }
+
+    void load(Task task) {
+        var targets = new ArrayList<Target>();
+        for (var target : task.getTargets()) {
+            targets.add(new Target(target.getName(), target.getJmods(), target.getOutputSuffix()));
+        }
+
+        mTableView.getItems().setAll(targets);
+    }
+
+    private void createUI() {
+        mTableView.setEditable(true);
+
+        var nameColumn = new TableColumn<Target, String>(Dict.NAME.toString());
+        nameColumn.setCellValueFactory(p -> new SimpleStringProperty(p.getValue().getName()));
+        nameColumn.setCellFactory(TextFieldTableCell.forTableColumn());
+        nameColumn.setOnEditCommit(event -> event.getRowValue().setName(event.getNewValue()));
+
+        var jmodsColumn = new TableColumn<Target, String>("jmods");
+        jmodsColumn.setCellValueFactory(p -> {
+            var jmods = p.getValue().getJmods();
+            return new SimpleStringProperty(jmods == null ? "" : jmods.getPath());
+        });
+        jmodsColumn.setCellFactory(TextFieldTableCell.forTableColumn());
+        jmodsColumn.setOnEditCommit(event -> event.getRowValue().setJmods(new File(event.getNewValue())));
+
+        var suffixColumn = new TableColumn<Target, String>("output suffix");
+        suffixColumn.setCellValueFactory(p -> new SimpleStringProperty(p.getValue().getOutputSuffix()));
+        suffixColumn.setCellFactory(TextFieldTableCell.forTableColumn());
+        suffixColumn.setOnEditCommit(event -> event.getRowValue().setOutputSuffix(event.getNewValue()));
+
+        nameColumn.prefWidthProperty().bind(mTableView.widthProperty().multiply(0.2));
+        jmodsColumn.prefWidthProperty().bind(mTableView.widthProperty().multiply(0.6));
+        suffixColumn.prefWidthProperty().bind(mTableView.widthProperty().multiply(0.18));
+
+        mTableView.getColumns().setAll(nameColumn, jmodsColumn, suffixColumn);
+        mTableView.setPlaceholder(new Label("Add targets to link the task for several platforms"));
+
+        var addButton = new Button("+");
+        addButton.setOnAction(actionEvent -> {
+            var index = mTableView.getItems().size() + 1;
+            mTableView.getItems().add(new Target("target%d".formatted(index), null, "-target%d".formatted(index)));
+        });
+
+        var removeButton = new Button("-");
+        removeButton.disableProperty().bind(mTableView.getSelectionModel().selectedItemProperty().isNull());
+        removeButton.setOnAction(actionEvent -> {
+            mTableView.getItems().remove(mTableView.getSelectionModel().getSelectedItem());
+        });
+
+        var buttonBox = new HBox(FxHelper.getUIScaled(8), addButton, removeButton);
+        FxHelper.setPadding(FxHelper.getUIScaledInsets(8, 0, 0, 0), buttonBox);
+
+        mBorderPane.setCenter(mTableView);
+        mBorderPane.setBottom(buttonBox);
+    }
+}
@@ -15,16 +15,23 @@
  */
 package se.trixon.cric.ui;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
+import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.Spinner;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
 import javafx.scene.control.TextField;
@@ -35,18 +42,29 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javax.swing.JFileChooser;
+import javax.swing.JList;
+import javax.swing.JScrollPane;
+import javax.swing.SwingUtilities;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.controlsfx.validation.ValidationSupport;
 import org.controlsfx.validation.Validator;
+import org.netbeans.api.progress.ProgressHandle;
 import org.openide.DialogDescriptor;
+import org.openide.DialogDisplayer;
+import org.openide.NotifyDescriptor;
+import org.openide.util.Cancellable;
 import org.openide.util.Exceptions;
 import se.trixon.almond.nbp.Almond;
+import se.trixon.almond.nbp.dialogs.NbMessage;
 import se.trixon.almond.util.Dict;
 import se.trixon.almond.util.fx.FxHelper;
 import se.trixon.almond.util.fx.control.FileChooserPaneSwingFx;
+import se.trixon.cric.core.CompressionTuner;
+import se.trixon.cric.core.ModuleGraph;
 import se.trixon.cric.core.StorageManager;
 import se.trixon.cric.core.Task;
+import se.trixon.cric.core.Task.ModulePath;
 import se.trixon.cric.core.TaskManager;
 
 /**
@@ -62,15 +80,18 @@ public class TaskEditor extends BorderPane {
     private ComboBox mEndianComboBox;
     private CheckBox mIgnoreSigningCheckBox;
     private FileChooserPaneSwingFx mJlinkChooserPane;
+    private final JvmTab mJvmTab = new JvmTab();
     private TextField mLauncherTextField;
     private final TaskManager mManager = TaskManager.getInstance();
     private TextField mNameTextField;
     private CheckBox mNoHeadersCheckBox;
     private CheckBox mNoManPagesCheckBox;
     private FileChooserPaneSwingFx mOutputChooserPane;
+    private Spinner<Integer> mSizeBudgetSpinner;
     private CheckBox mStripDebugCheckBox;
     private TabPane mTabPane;
     private ChangeListener<Tab> mTabSelectionListener;
+    private final TargetsTab mTargetsTab = new TargetsTab();
     private Task mTask;
     private final ValidationSupport mValidationSupport = new ValidationSupport();
 
@@ -88,6 +109,8 @@ public class TaskEditor extends BorderPane {
 
         if (task == null) {
             task = new Task();
+        } else if (StorageManager.getInstance().ensureLoaded(task).getLoadError() != null) {
+            NbMessage.error(task.getName(), "%s\n\nChanges can not be saved until the task file is repaired.".formatted(task.getLoadError()));
         }
 
         mDialogDescriptor = dialogDescriptor;
@@ -105,6 +128,7 @@ public class TaskEditor extends BorderPane {
         mStripDebugCheckBox.setSelected(task.isStripDebug());
         mCompressComboBox.getSelectionModel().select(task.getCompress());
         mEndianComboBox.getSelectionModel().select(task.getEndian());
+        mSizeBudgetSpinner.getValueFactory().setValue((int) task.getSizeBudget());
 
         initTabs(task);
 
@@ -127,17 +151,16 @@ public class TaskEditor extends BorderPane {
         mTask.setStripDebug(mStripDebugCheckBox.isSelected());
         mTask.setCompress(mCompressComboBox.getSelectionModel().getSelectedIndex());
         mTask.setEndian(mEndianComboBox.getSelectionModel().getSelectedIndex());
+        mTask.setSizeBudget(mSizeBudgetSpinner.getValue());
 
-        var modulePaths = mTabPane.getTabs().stream()
-                .filter(tab -> (tab instanceof ModulePathTab))
-                .map(tab -> (ModulePathTab) tab)
-                .map(tab -> tab.getModulePath())
-                .collect(Collectors.toCollection(ArrayList::new));
-
-        mTask.setModulePaths(modulePaths);
+        mTask.setModulePaths(getModulePaths());
+        mTask.setTargets(mTargetsTab.getTargets());
+        mTask.setJvmProfile(mJvmTab.getJvmProfile());
 
         mManager.getIdToItem().put(mTask.getId(), mTask);
-        StorageManager.save();
+        // the map does not notify a put of the same instance
+        mManager.reindex(mTask);
+        StorageManager.save(mTask);
 
         return mTask;
     }
@@ -185,6 +208,10 @@ public class TaskEditor extends BorderPane {
         mEndianComboBox = new ComboBox();
         mEndianComboBox.getItems().setAll("Native", "Little", "Big");
 
+        mSizeBudgetSpinner = new Spinner<>(0, 100_000, 0, 10);
+        mSizeBudgetSpinner.setEditable(true);
+        mSizeBudgetSpinner.setTooltip(new Tooltip("Fail the run when an image is larger than this many MB, 0 for no limit"));
+
         int row = 0;
         gp.addRow(row++, nameLabel, descLabel);
         gp.addRow(row++, mNameTextField, mDescTextField);
@@ -193,18 +220,28 @@ public class TaskEditor extends BorderPane {
         var compressLabel = new Label("compress");
         var endianLabel = new Label("endian");
         var launcherLabel = new Label("launcher");
+        var sizeBudgetLabel = new Label("size budget (MB)");
 
         var box1 = new HBox(FxHelper.getUIScaled(8),
                 new VBox(compressLabel, mCompressComboBox),
-                new VBox(endianLabel, mEndianComboBox)
+                new VBox(endianLabel, mEndianComboBox),
+                new VBox(sizeBudgetLabel, mSizeBudgetSpinner)
         );
         var box2 = new VBox(launcherLabel, mLauncherTextField);
 
         gp.add(box1, 0, row);
         gp.add(box2, 1, row++);
 
+        var closureButton = new Button("module closure");
+        closureButton.setTooltip(new Tooltip("Pick the root modules of the application and select exactly the modules they require"));
+        closureButton.setOnAction(actionEvent -> selectClosure());
+
+        var tuneButton = new Button("tune compression");
+        tuneButton.setTooltip(new Tooltip("Link at every compression level and compare link time, size and startup time"));
+        tuneButton.setOnAction(actionEvent -> tuneCompression());
+
         var box3 = new HBox(FxHelper.getUIScaled(16),
-                mBindServicesCheckBox, mIgnoreSigningCheckBox, mNoHeadersCheckBox, mNoManPagesCheckBox, mStripDebugCheckBox
+                mBindServicesCheckBox, mIgnoreSigningCheckBox, mNoHeadersCheckBox, mNoManPagesCheckBox, mStripDebugCheckBox, closureButton, tuneButton
         );
 
         gp.add(box3, 0, row++, GridPane.REMAINING, 1);
@@ -218,7 +255,8 @@ public class TaskEditor extends BorderPane {
                 mOutputChooserPane,
                 compressLabel,
                 endianLabel,
-                launcherLabel
+                launcherLabel,
+                sizeBudgetLabel
         );
 
         FxHelper.setPadding(FxHelper.getUIScaledInsets(16, 0, 0, 0),
@@ -232,12 +270,21 @@ public class TaskEditor extends BorderPane {
         setCenter(mTabPane);
     }
 
+    private ArrayList<ModulePath> getModulePaths() {
+        return mTabPane.getTabs().stream()
+                .filter(tab -> (tab instanceof ModulePathTab))
+                .map(tab -> (ModulePathTab) tab)
+                .map(tab -> tab.getModulePath())
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
     private void initListeners() {
         mTabSelectionListener = (p, o, n) -> {
             if (mTabPane.getSelectionModel().getSelectedIndex() == 0) {
                 Platform.runLater(() -> {
-                    var modulePathTab = new ModulePathTab(mTabPane.getTabs().size(), null);
-                    mTabPane.getTabs().add(modulePathTab);
+                    var tabs = mTabPane.getTabs();
+                    var modulePathTab = new ModulePathTab(tabs.size() - 1, null);
+                    tabs.add(tabs.indexOf(mTargetsTab), modulePathTab);
                     mTabPane.getSelectionModel().select(modulePathTab);
                 });
             }
@@ -291,6 +338,11 @@ public class TaskEditor extends BorderPane {
             }
         }
 
+        mTargetsTab.load(task);
+        tabs.add(mTargetsTab);
+        mJvmTab.load(task);
+        tabs.add(mJvmTab);
+
         mTabPane.getSelectionModel().select(1);
         mTabPane.getSelectionModel().selectedItemProperty().addListener(mTabSelectionListener);
     }
@@ -314,4 +366,156 @@ public class TaskEditor extends BorderPane {
 
         mValidationSupport.initInitialDecoration();
     }
+
+    /**
+     * Let the user pick the root modules of the application, preselecting
+     * the launcher module and the selected modules no other selected module
+     * requires, and offer their closure as the selection.
+     */
+    private void selectClosure() {
+        var task = new Task();
+        task.setJlink(mJlinkChooserPane.getPath());
+        task.setModulePaths(getModulePaths());
+        task.setLauncher(mLauncherTextField.getText());
+        var bindServices = mBindServicesCheckBox.isSelected();
+
+        new Thread(() -> {
+            var moduleGraph = ModuleGraph.of(task);
+            var dirs = new HashSet<File>();
+            var selected = new TreeSet<String>();
+            for (var modulePath : task.getModulePaths()) {
+                dirs.add(modulePath.getDirectory());
+                selected.addAll(modulePath.getSelectedModules());
+            }
+
+            var names = moduleGraph.getDescriptors().keySet().stream()
+                    .filter(name -> dirs.contains(moduleGraph.getLocation(name)))
+                    .sorted()
+                    .toList();
+            var roots = moduleGraph.getTopLevel(selected, bindServices);
+            if (task.getLauncherModule() != null) {
+                roots.add(task.getLauncherModule());
+            }
+
+            SwingUtilities.invokeLater(() -> {
+                var list = new JList<>(names.toArray(String[]::new));
+                list.setSelectedIndices(roots.stream().mapToInt(names::indexOf).filter(i -> i >= 0).toArray());
+                var title = "Module closure";
+                var message = new Object[]{"Root modules of the application and its launcher", new JScrollPane(list)};
+                var d = new NotifyDescriptor.Confirmation(message, title, NotifyDescriptor.OK_CANCEL_OPTION);
+                if (DialogDisplayer.getDefault().notify(d) != NotifyDescriptor.OK_OPTION || list.isSelectionEmpty()) {
+                    return;
+                }
+
+                var resolution = moduleGraph.resolve(list.getSelectedValuesList(), bindServices);
+                var closure = resolution.getClosure();
+                var added = new TreeSet<>(closure);
+                added.removeAll(selected);
+                added.retainAll(names);
+                var removed = new TreeSet<>(selected);
+                removed.removeAll(closure);
+
+                var sb = new StringBuilder("%d root modules link %d modules.\n\n".formatted(list.getSelectedValuesList().size(), closure.size()));
+                if (!added.isEmpty()) {
+                    sb.append("Select (%d): %s\n".formatted(added.size(), String.join(", ", added)));
+                }
+                if (!removed.isEmpty()) {
+                    sb.append("Deselect (%d): %s\n".formatted(removed.size(), String.join(", ", removed)));
+                }
+                if (!resolution.getMissing().isEmpty()) {
+                    sb.append("Not found: %s\n".formatted(String.join(", ", resolution.getMissing())));
+                }
+
+                if (added.isEmpty() && removed.isEmpty()) {
+                    sb.append("The selection is the closure of the root modules.");
+                    DialogDisplayer.getDefault().notify(new NotifyDescriptor.Message(sb.toString(), NotifyDescriptor.INFORMATION_MESSAGE));
+                } else {
+                    sb.append("\nSelect the closure?");
+                    var confirmation = new NotifyDescriptor.Confirmation(sb.toString(), title, NotifyDescriptor.OK_CANCEL_OPTION);
+                    if (DialogDisplayer.getDefault().notify(confirmation) == NotifyDescriptor.OK_OPTION) {
+                        Platform.runLater(() -> {
+                            mTabPane.getTabs().stream().filter(tab -> tab instanceof ModulePathTab).forEachOrdered(tab -> {
+                                var modulePathTab = (ModulePathTab) tab;
+                                var dir = modulePathTab.getModulePath().getDirectory();
+                                var modules = new TreeSet<String>(closure);
+                                modules.removeIf(name -> !Objects.equals(moduleGraph.getLocation(name), dir));
+                                modulePathTab.setSelected(modules);
+                            });
+                        });
+                    }
+                }
+            });
+        }, "ModuleGraph").start();
+    }
+
+    private void tuneCompression() {
+        var task = new Task();
+        task.setJlink(mJlinkChooserPane.getPath());
+        task.setModulePaths(getModulePaths());
+        task.setLauncher(mLauncherTextField.getText());
+        task.setBindServices(mBindServicesCheckBox.isSelected());
+        task.setNoHeaders(mNoHeadersCheckBox.isSelected());
+        task.setNoManPages(mNoManPagesCheckBox.isSelected());
+        task.setIgnoreSigning(mIgnoreSigningCheckBox.isSelected());
+        task.setStripDebug(mStripDebugCheckBox.isSelected());
+        task.setEndian(mEndianComboBox.getSelectionModel().getSelectedIndex());
+        task.setJvmProfile(mJvmTab.getJvmProfile());
+
+        new Thread(() -> {
+            var title = "Compression levels";
+            var tunerThread = Thread.currentThread();
+            var allowToCancel = (Cancellable) () -> {
+                tunerThread.interrupt();
+
+                return true;
+            };
+            var progressHandle = ProgressHandle.createHandle(title, allowToCancel);
+            progressHandle.start(CompressionTuner.STEPS);
+            List<CompressionTuner.Result> results;
+            try {
+                results = new CompressionTuner(task).tune(progressHandle::progress);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                DialogDisplayer.getDefault().notify(new NotifyDescriptor.Message("Failed to tune the compression: %s".formatted(ex.getMessage()), NotifyDescriptor.ERROR_MESSAGE));
+                return;
+            } finally {
+                progressHandle.finish();
+            }
+
+            var sb = new StringBuilder("○ dominated, ◉ Pareto optimal\n\n");
+            var options = new ArrayList<Object>();
+            for (var result : results) {
+                var level = "zip-%d".formatted(result.getLevel());
+                if (result.isSuccess()) {
+                    var startup = result.getStartupTime() < 0 ? "n/a" : "%d ms".formatted(result.getStartupTime());
+                    sb.append("%s %s  link %.1f s, size %s, startup %s\n".formatted(
+                            result.isParetoOptimal() ? '◉' : '○',
+                            level,
+                            result.getLinkTime() / 1E3,
+                            FileUtils.byteCountToDisplaySize(result.getSize()),
+                            startup
+                    ));
+                    if (result.isParetoOptimal()) {
+                        options.add(level);
+                    }
+                } else {
+                    sb.append("✕ %s  %s\n".formatted(level, result.getError()));
+                }
+            }
+
+            if (options.isEmpty()) {
+                DialogDisplayer.getDefault().notify(new NotifyDescriptor.Message(sb.toString(), NotifyDescriptor.ERROR_MESSAGE));
+                return;
+            }
+
+            sb.append("\nApply a level to the task?");
+            options.add(NotifyDescriptor.CANCEL_OPTION);
+            var d = new NotifyDescriptor(sb.toString(), title, NotifyDescriptor.DEFAULT_OPTION, NotifyDescriptor.PLAIN_MESSAGE, options.toArray(), NotifyDescriptor.CANCEL_OPTION);
+            if (DialogDisplayer.getDefault().notify(d) instanceof String level) {
+                Platform.runLater(() -> mCompressComboBox.getSelectionModel().select(Integer.parseInt(level.substring("zip-".length()))));
+            }
+        }, "CompressionTuner").start();
+    }
 }
@@ -15,7 +15,13 @@
  */
 package se.trixon.cric.ui;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Label;
@@ -28,6 +34,8 @@ import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
 import se.trixon.almond.nbp.NbHelper;
 import se.trixon.almond.util.fx.FxHelper;
+import se.trixon.cric.core.ImageAnalysis;
+import se.trixon.cric.core.StorageManager;
 import se.trixon.cric.core.Task;
 
 /**
@@ -36,6 +44,8 @@ import se.trixon.cric.core.Task;
  */
 public class TaskInfoPane extends VBox {
 
+    private static final int MAX_MODULES = 5;
+    private static final int MAX_PACKAGES = 3;
     private final Label mDescLabel = new Label();
     private final Label mNameLabel = new Label();
     private final SummaryDetails mSummaryDetails = new SummaryDetails();
@@ -63,6 +73,7 @@ public class TaskInfoPane extends VBox {
     }
 
     void load(Task task) {
+        StorageManager.getInstance().ensureLoaded(task);
         mNameLabel.setText(task.getName());
         mDescLabel.setText(task.getDescription());
 
@@ -139,6 +150,39 @@ public class TaskInfoPane extends VBox {
                 getChildren().addAll(path, modules);
             }
 
+            for (var target : task.getTargets()) {
+                var name = new Text("\ntarget " + target.getName());
+                headerTexts.add(name);
+                var details = new Text("\n%s → %s".formatted(target.getJmods(), task.getOutput(target).getPath()));
+                bodyTexts.add(details);
+
+                getChildren().addAll(name, details);
+            }
+
+            var outputs = new LinkedHashMap<String, File>();
+            if (task.getTargets().isEmpty()) {
+                outputs.put("size", task.getOutput());
+            } else {
+                for (var target : task.getTargets()) {
+                    outputs.put("size " + target.getName(), task.getOutput(target));
+                }
+            }
+
+            outputs.forEach((title, output) -> {
+                if (output.isDirectory()) {
+                    var header = new Text("\n" + title);
+                    headerTexts.add(header);
+                    var body = new Text("\n…");
+                    bodyTexts.add(body);
+
+                    getChildren().addAll(header, body);
+
+                    CompletableFuture.supplyAsync(() -> getSizeSummary(task, output)).thenAccept(summary -> {
+                        Platform.runLater(() -> body.setText("\n" + summary));
+                    });
+                }
+            });
+
             var defaultFont = Font.getDefault();
             var fontSize = defaultFont.getSize() * 1.2;
 
@@ -164,5 +208,24 @@ public class TaskInfoPane extends VBox {
         private char getBallotBox(boolean checked) {
             return checked ? '◉' : '○';
         }
+
+        /**
+         * Analyze an image, which reads the index of its jimage, so it is not
+         * done on the UI thread.
+         */
+        private String getSizeSummary(Task task, File output) {
+            try {
+                var imageAnalysis = ImageAnalysis.of(output);
+                var summary = "%s\n%s".formatted(imageAnalysis.getCategorySummary(), imageAnalysis.getPackageSummary(MAX_MODULES, MAX_PACKAGES));
+                var problem = imageAnalysis.checkBudget(task.getSizeBudget());
+                if (problem != null) {
+                    summary += "\n" + problem;
+                }
+
+                return summary;
+            } catch (IOException | UncheckedIOException ex) {
+                return ex.getMessage();
+            }
+        }
     }
 }
@@ -22,6 +22,7 @@ import se.trixon.almond.util.SystemHelper;
 import se.trixon.almond.util.fx.FxHelper;
 import se.trixon.almond.util.fx.control.editable_list.EditableListCell;
 import se.trixon.cric.core.ExecutorManager;
+import se.trixon.cric.core.StorageManager;
 import se.trixon.cric.core.Task;
 
 /**
@@ -61,7 +62,7 @@ public class TaskListCell extends EditableListCell<Task> {
                     mEditor.editTask(null, task);
                 } else if (mouseEvent.isShiftDown()) {
                     try {
-                        SystemHelper.desktopOpenOrElseParent(task.getOutput());
+                        SystemHelper.desktopOpenOrElseParent(StorageManager.getInstance().ensureLoaded(task).getOutput());
                     } catch (Exception e) {
                         // nvm
                     }
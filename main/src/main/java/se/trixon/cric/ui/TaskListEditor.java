@@ -17,10 +17,14 @@ package se.trixon.cric.ui;
 
 import java.awt.Dimension;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Objects;
 import java.util.UUID;
 import javafx.application.Platform;
 import javafx.scene.Scene;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.SelectionMode;
 import javax.swing.SwingUtilities;
 import org.openide.DialogDescriptor;
 import org.openide.DialogDisplayer;
@@ -98,7 +102,7 @@ public class TaskListEditor {
                     editTask(title, task);
                 })
                 .setOnRemoveAll(() -> {
-                    mTaskManager.getIdToItem().clear();
+                    mTaskManager.clear();
                     StorageManager.save();
                 })
                 .setOnRemove(t -> {
@@ -106,7 +110,7 @@ public class TaskListEditor {
                     StorageManager.save();
                 })
                 .setOnClone(t -> {
-                    var original = t;
+                    var original = StorageManager.getInstance().ensureLoaded(t);
                     var json = GSON.toJson(original);
                     var clone = GSON.fromJson(json, original.getClass());
                     var uuid = UUID.randomUUID().toString();
@@ -115,7 +119,7 @@ public class TaskListEditor {
                     clone.setName("%s %s".formatted(clone.getName(), LocalDate.now().toString()));
                     mTaskManager.getIdToItem().put(clone.getId(), clone);
 
-                    StorageManager.save();
+                    StorageManager.save(clone);
 
                     return mTaskManager.getById(uuid);
                 })
@@ -124,11 +128,53 @@ public class TaskListEditor {
                 })
                 .build();
 
-        mEditableList.getListView().setCellFactory(listView -> new TaskListCell(this));
+        var listView = mEditableList.getListView();
+        listView.setCellFactory(lv -> new TaskListCell(this));
+        listView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+
+        var runSelectedMenuItem = new MenuItem("%s (%s)".formatted(Dict.RUN.toString(), Dict.SELECTED.toLower()));
+        runSelectedMenuItem.setOnAction(actionEvent -> {
+            mExecutorManager.requestStartBatch(new ArrayList<>(listView.getSelectionModel().getSelectedItems()));
+        });
+
+        var historyMenuItem = new MenuItem("History");
+        historyMenuItem.disableProperty().bind(listView.getSelectionModel().selectedItemProperty().isNull());
+        historyMenuItem.setOnAction(actionEvent -> {
+            showHistory(listView.getSelectionModel().getSelectedItem());
+        });
+
+        listView.setContextMenu(new ContextMenu(runSelectedMenuItem, historyMenuItem));
     }
 
     private void postEdit(Task task) {
         mEditableList.postEdit(task);
     }
 
+    private void showHistory(Task task) {
+        var historyPane = new HistoryPane(task);
+        historyPane.setPadding(FxHelper.getUIScaledInsets(8));
+        var dialogPanel = new FxDialogPanel() {
+            @Override
+            protected void fxConstructor() {
+                setScene(new Scene(historyPane));
+            }
+        };
+        dialogPanel.setPreferredSize(SwingHelper.getUIScaledDim(1000, 700));
+
+        SwingUtilities.invokeLater(() -> {
+            dialogPanel.initFx(null);
+            var d = new DialogDescriptor(
+                    dialogPanel,
+                    "History: %s".formatted(task.getName()),
+                    true,
+                    new Object[]{DialogDescriptor.OK_OPTION},
+                    DialogDescriptor.OK_OPTION,
+                    0,
+                    null,
+                    null
+            );
+            DialogDisplayer.getDefault().notify(d);
+        });
+    }
+
 }